@@ -0,0 +1,88 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor;
+
+import static nycto.clipboard_incrementor.manager.ClipboardManager.getClipboardText;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import nycto.clipboard_incrementor.watcher.DirectoryWatcher;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the time from the first call into the application to the first new filename on the clipboard: printing
+ * the banner, watching a directory and handling the first created file. Every fork measures a single shot in a fresh
+ * JVM, so class loading and initialization of the application are part of the measurement, but starting the JVM and
+ * JMH itself are not. Process start to first clipboard write has to be timed outside of JMH.
+ * <p>
+ * To measure the effect of an AppCDS archive, build it with {@code mvn -P appcds package} and pass
+ * {@code -jvmArgsAppend -XX:SharedArchiveFile=target/clipboard_incrementor.jsa} in {@code jmh.args}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(
+    value = 20,
+    jvmArgsAppend = {
+        "-Dclipboard_incrementor.clipboard.backend=memory",
+        "-Dclipboard_incrementor.clipboard.quiet-period-ms=0",
+        "-Dclipboard_incrementor.watcher.persistent-snapshots=false",
+    }
+)
+@State(Scope.Benchmark)
+public class StartupBenchmark {
+
+    private Path directoryPath;
+
+    @Setup
+    public void setUp() throws IOException {
+        directoryPath = Files.createTempDirectory("startup-benchmark");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Main.stopApplication();
+
+        try (var filePaths = Files.list(directoryPath)) {
+            for (Path filePath : filePaths.toList()) Files.delete(filePath);
+        }
+
+        Files.delete(directoryPath);
+    }
+
+    @Benchmark
+    public String timeToFirstClipboardText() throws IOException {
+        Main.printStartBanner();
+        DirectoryWatcher.watchDirectory(directoryPath);
+        Main.submitDirectoryWatcher();
+
+        Files.createFile(directoryPath.resolve("scan_0041.png"));
+
+        String clipboardText;
+
+        while (!"scan_0042".equals(clipboardText = getClipboardText())) LockSupport.parkNanos(100_000);
+
+        return clipboardText;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Benchmarks for the filename pipeline that runs for every new file.
+ * <p>
+ * Run with {@code mvn -P benchmark verify}. The gc profiler is enabled by default, so the results contain the
+ * allocation rate ({@code gc.alloc.rate.norm}) next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilenameManagerBenchmark {
+
+    @Param(
+        {
+            "img_5.jpg",
+            "archive 12.tar.gz",
+            "banner-icon.min.css",
+            "some-song-000999.mp3",
+            "0000000.png",
+            "scan_123456789012345678901234567890.tiff",
+        }
+    )
+    public String filename;
+
+    private String filenameWithoutExtensions;
+    private FilenameParts filenameParts;
+
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        /* Names without a number print a message, keep it out of the benchmark output */
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        filenameWithoutExtensions = FilenameManager.removeFileExtensions(filename);
+        filenameParts = FilenameParts.parse(filename);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public String createNewFilename() {
+        return FilenameManager.createNewFilename(filename);
+    }
+
+    /**
+     * Computes the same filename over and over, so every call after the first one is a cache hit
+     */
+    @Benchmark
+    public String computeNewFilename() {
+        return FilenameManager.computeNewFilename(filename);
+    }
+
+    @Benchmark
+    public String incrementLastNumberInFilename() {
+        return FilenameManager.incrementLastNumberInFilename(filenameWithoutExtensions);
+    }
+
+    @Benchmark
+    public String removeFileExtensions() {
+        return FilenameManager.removeFileExtensions(filename);
+    }
+
+    @Benchmark
+    public FilenameParts parseFilenameParts() {
+        return FilenameParts.parse(filename);
+    }
+
+    /**
+     * Creates the new filename from a parsed filename, like the directory watcher does after parsing the name of a
+     * created file once
+     */
+    @Benchmark
+    public String createNewFilenameFromParts() {
+        return FilenameManager.createNewFilename(filenameParts, NamingTemplate.DEFAULT);
+    }
+}
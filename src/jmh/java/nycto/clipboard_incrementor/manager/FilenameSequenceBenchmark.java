@@ -0,0 +1,58 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks generating a million successive filenames, with the sequence and with repeated single steps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilenameSequenceBenchmark {
+
+    private static final int FILENAME_COUNT = 1_000_000;
+
+    @Param({ "img_5.jpg", "scan_000001.tiff" })
+    public String filename;
+
+    @Benchmark
+    public void filenameSequence(Blackhole blackhole) {
+        FilenameSequence filenameSequence = new FilenameSequence(filename);
+
+        for (int i = 0; i < FILENAME_COUNT; i++) blackhole.consume(filenameSequence.next());
+    }
+
+    @Benchmark
+    public void repeatedComputeNewFilename(Blackhole blackhole) {
+        String currentFilename = filename;
+
+        for (int i = 0; i < FILENAME_COUNT; i++) {
+            currentFilename = FilenameManager.computeNewFilename(currentFilename);
+            blackhole.consume(currentFilename);
+        }
+    }
+}
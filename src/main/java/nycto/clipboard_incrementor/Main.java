@@ -19,50 +19,103 @@
 
 package nycto.clipboard_incrementor;
 
+import static nycto.clipboard_incrementor.control.ControlServer.closeControlServer;
+import static nycto.clipboard_incrementor.control.ControlServer.startControlServer;
+import static nycto.clipboard_incrementor.manager.ClipboardManager.closeClipboardWriter;
+import static nycto.clipboard_incrementor.manager.ClipboardManager.redirectStatusOutput;
 import static nycto.clipboard_incrementor.manager.ConsoleManager.closeStdinScanner;
 import static nycto.clipboard_incrementor.manager.ConsoleManager.processConsoleInput;
 import static nycto.clipboard_incrementor.manager.DirectoryManager.*;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.registerMBean;
 import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.closeWatchService;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.getWatchServices;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.stopWatchService;
 
-import java.awt.*;
+import java.awt.Desktop;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.*;
+import nycto.clipboard_incrementor.batch.BatchMode;
+import nycto.clipboard_incrementor.control.ControlClient;
 import nycto.clipboard_incrementor.watcher.DirectoryWatcher;
 import org.jetbrains.annotations.Nullable;
 
 public class Main {
 
-    private static final ExecutorService EXECUTOR_SERVICE = Executors.newCachedThreadPool();
+    /**
+     * Runs every directory watcher on its own virtual thread. The executor owns the lifetime of the watch session:
+     * shutting it down waits until all watchers have stopped, for at most {@link #EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS}.
+     */
+    private static final ExecutorService EXECUTOR_SERVICE = Executors.newVirtualThreadPerTaskExecutor();
+
+    private static final long EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS = 5;
 
     public static final URI ISSUES_URI = URI.create("https://github.com/Nycto97/clipboard-incrementor/issues");
 
     public static final String OS_NAME = getOperatingSystemName();
     public static final String OS_NAME_SUFFIX = OS_NAME.isEmpty() ? "" : " (" + OS_NAME + ")";
 
-    public static final boolean IS_DESKTOP_SUPPORTED = Desktop.isDesktopSupported();
+    /**
+     * Futures of the running directory watchers, one per watch service
+     */
+    private static final Map<WatchService, Future<?>> FUTURES = new HashMap<>();
+
+    /**
+     * Holds the desktop, so AWT is only loaded when a page or directory is opened for the first time.
+     */
+    private static final class DesktopHolder {
+
+        private static final boolean IS_DESKTOP_SUPPORTED = Desktop.isDesktopSupported();
 
-    @Nullable public static final Desktop DESKTOP = IS_DESKTOP_SUPPORTED ? Desktop.getDesktop() : null;
+        @Nullable private static final Desktop DESKTOP = IS_DESKTOP_SUPPORTED ? Desktop.getDesktop() : null;
 
-    public static final boolean IS_OPEN_ACTION_SUPPORTED = DESKTOP != null && DESKTOP.isSupported(Desktop.Action.OPEN);
+        private static final boolean IS_OPEN_ACTION_SUPPORTED =
+            DESKTOP != null && DESKTOP.isSupported(Desktop.Action.OPEN);
+    }
 
-    @Nullable private static Future<?> future = null;
+    public static boolean isDesktopSupported() {
+        return DesktopHolder.IS_DESKTOP_SUPPORTED;
+    }
+
+    @Nullable public static Desktop getDesktop() {
+        return DesktopHolder.DESKTOP;
+    }
+
+    public static boolean isOpenActionSupported() {
+        return DesktopHolder.IS_OPEN_ACTION_SUPPORTED;
+    }
 
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchMode.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
+        if (args.length > 0 && args[0].equals("--control")) {
+            System.exit(ControlClient.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+
         startApplication();
     }
 
-    private static void cancelFuture() {
-        if (future == null || future.isDone()) return;
+    private static synchronized void cancelFutures() {
+        for (Future<?> future : FUTURES.values()) {
+            if (future.isDone()) continue;
 
-        future.cancel(true);
+            future.cancel(true);
 
-        if (future.isCancelled()) {
-            System.out.println("Successfully cancelled future");
-        } else {
-            System.err.println("Could not cancel future");
+            if (future.isCancelled()) {
+                System.out.println("Successfully cancelled future");
+            } else {
+                System.err.println("Could not cancel future");
+            }
         }
+
+        FUTURES.clear();
     }
 
     public static String createDivider(int length) {
@@ -81,7 +134,9 @@ public class Main {
     }
 
     public static void openIssuesPage() {
-        if (!IS_DESKTOP_SUPPORTED || DESKTOP == null) {
+        @Nullable Desktop desktop = getDesktop();
+
+        if (!isDesktopSupported() || desktop == null) {
             System.err.println(
                 "Desktop class is not supported on this platform" +
                 OS_NAME_SUFFIX +
@@ -93,7 +148,7 @@ public class Main {
             return;
         }
 
-        if (!IS_OPEN_ACTION_SUPPORTED) {
+        if (!isOpenActionSupported()) {
             System.err.println(
                 "Desktop class does not support the OPEN action" +
                 System.lineSeparator() +
@@ -105,7 +160,7 @@ public class Main {
         }
 
         try {
-            DESKTOP.browse(ISSUES_URI);
+            desktop.browse(ISSUES_URI);
             System.out.println("Successfully opened issues page");
         } catch (IOException ioException) {
             System.err.println(
@@ -130,14 +185,17 @@ public class Main {
     }
 
     private static void startApplication() {
+        redirectStatusOutput();
         printStartBanner();
+        registerMBean();
+        startControlServer();
 
         String directory = "C:\\users\\myName\\Desktop\\Test";
         Path directoryPath = Path.of(directory);
 
         if (directoryExists(directoryPath)) {
             setWatchedDirectoryPath(directoryPath);
-            submitDirectoryWatcher();
+            watchDirectory(directoryPath);
         } else {
             handleNonExistingDirectory(
                 directoryPath,
@@ -150,46 +208,66 @@ public class Main {
     }
 
     /**
-     * Stops the application by closing the "standard" input scanner, closing the watch service,
-     * canceling the future and shutting down the ExecutorService.
-     *
-     * @see
-     * <a href="https://www.baeldung.com/java-executor-service-tutorial#shutting">Shutting Down an ExecutorService</a>
+     * Stops the application by closing the "standard" input scanner, closing the control server, stopping the watch
+     * service, canceling the futures, closing the ExecutorService, which waits for the directory watchers to handle
+     * their last events, and only then storing the snapshots and closing the clipboard writer.
      */
     public static void stopApplication() {
         System.out.println("Stopping application...");
 
         closeStdinScanner();
+        closeControlServer();
+        stopWatchService();
+        cancelFutures();
+
+        shutdownExecutorService();
+
         closeWatchService();
-        cancelFuture();
+        closeClipboardWriter();
+    }
 
+    /**
+     * Shuts down the executor service, interrupting the directory watchers that are still running once the timeout has
+     * passed.
+     */
+    private static void shutdownExecutorService() {
         EXECUTOR_SERVICE.shutdown();
 
         try {
-            if (!EXECUTOR_SERVICE.awaitTermination(800, TimeUnit.MILLISECONDS)) {
+            if (!EXECUTOR_SERVICE.awaitTermination(EXECUTOR_SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
                 EXECUTOR_SERVICE.shutdownNow();
             }
         } catch (InterruptedException interruptedException) {
             EXECUTOR_SERVICE.shutdownNow();
+            Thread.currentThread().interrupt();
         }
 
-        if (EXECUTOR_SERVICE.isShutdown()) {
+        if (EXECUTOR_SERVICE.isTerminated()) {
             System.out.println("Successfully shut down ExecutorService");
         } else {
             System.err.println("Could not shut down ExecutorService");
         }
     }
 
-    public static void submitDirectoryWatcher() throws IllegalStateException {
-        /* Cancel the future, if one exists and is not completed/done, before submitting a new Callable */
-        cancelFuture();
-        /* Close the watch service, if one exists, before submitting a new Callable */
-        closeWatchService();
+    /**
+     * Submits a directory watcher for every watch service that is in use, unless it is already running. A single
+     * directory watcher handles all directories of a watch service, so it only needs to be (re)submitted when it is not
+     * running.
+     */
+    public static synchronized void submitDirectoryWatcher() throws IllegalStateException {
+        for (WatchService watchService : getWatchServices()) {
+            @Nullable Future<?> future = FUTURES.get(watchService);
 
-        try {
-            future = EXECUTOR_SERVICE.submit(new DirectoryWatcher());
-        } catch (NullPointerException | RejectedExecutionException exception) {
-            throw new IllegalStateException("Could not submit Callable for watching the directory", exception);
+            if (future != null && !future.isDone()) continue;
+
+            try {
+                FUTURES.put(watchService, EXECUTOR_SERVICE.submit(new DirectoryWatcher(watchService)));
+            } catch (NullPointerException | RejectedExecutionException exception) {
+                throw new IllegalStateException("Could not submit Callable for watching the directory", exception);
+            }
         }
+
+        /* Forget the futures of watch services that were closed */
+        FUTURES.keySet().retainAll(getWatchServices());
     }
 }
@@ -0,0 +1,150 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.batch;
+
+import static nycto.clipboard_incrementor.manager.FilenameManager.computeNewFilename;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Non-interactive mode that reads newline-separated filenames and writes the new filename of each of them on its own
+ * line, in the same order. Empty lines are passed through as empty lines.
+ * <p>
+ * The input is read in chunks of lines that are processed in parallel. Only a bounded number of chunks is in flight
+ * at any time and the chunks are written in the order they were read, so large inputs are processed with constant
+ * memory while the output order matches the input.
+ */
+public final class BatchMode {
+
+    static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final int chunkSize;
+    private final int parallelism;
+
+    public BatchMode(int chunkSize, int parallelism) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Runs the batch mode from the command line arguments that follow {@code --batch}: an optional input file, stdin
+     * otherwise. The new filenames are written to stdout.
+     *
+     * @return the exit status
+     */
+    public static int run(String[] arguments) {
+        BatchMode batchMode = new BatchMode(DEFAULT_CHUNK_SIZE, Runtime.getRuntime().availableProcessors());
+        Writer writer = Channels.newWriter(
+            Channels.newChannel(new FileOutputStream(FileDescriptor.out)),
+            StandardCharsets.UTF_8
+        );
+
+        try (
+            BufferedReader reader = arguments.length > 0
+                ? Files.newBufferedReader(Path.of(arguments[0]), StandardCharsets.UTF_8)
+                : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), BUFFER_SIZE);
+            BufferedWriter bufferedWriter = new BufferedWriter(writer, BUFFER_SIZE)
+        ) {
+            batchMode.process(reader, bufferedWriter);
+            return 0;
+        } catch (IOException | UncheckedIOException | InvalidPathException exception) {
+            System.err.println("Could not process filenames: " + exception.getMessage());
+            return 1;
+        } catch (SecurityException securityException) {
+            System.err.println("Permission denied to read the filenames: " + securityException.getMessage());
+            return 1;
+        } catch (IllegalStateException illegalStateException) {
+            /* A chunk failed on a worker thread */
+            @Nullable Throwable cause = illegalStateException.getCause();
+            System.err.println(illegalStateException.getMessage() + ": " + (cause != null ? cause : "unknown error"));
+            return 1;
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    public void process(BufferedReader reader, Writer writer) throws IOException, InterruptedException {
+        /* Two chunks per thread keep all threads busy while the oldest chunk is written */
+        int maxChunksInFlight = parallelism * 2;
+        ArrayDeque<Future<String>> chunksInFlight = new ArrayDeque<>(maxChunksInFlight);
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+
+        try {
+            String @Nullable [] lines;
+
+            while ((lines = readChunk(reader)) != null) {
+                String[] chunk = lines;
+                chunksInFlight.add(executorService.submit(() -> processChunk(chunk)));
+
+                if (chunksInFlight.size() >= maxChunksInFlight) writer.write(awaitChunk(chunksInFlight.poll()));
+            }
+
+            while (!chunksInFlight.isEmpty()) writer.write(awaitChunk(chunksInFlight.poll()));
+
+            writer.flush();
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private String @Nullable [] readChunk(BufferedReader reader) throws IOException {
+        String[] lines = new String[chunkSize];
+        int lineCount = 0;
+        @Nullable String line;
+
+        while (lineCount < chunkSize && (line = reader.readLine()) != null) lines[lineCount++] = line;
+
+        if (lineCount == 0) return null;
+
+        return lineCount == chunkSize ? lines : Arrays.copyOf(lines, lineCount);
+    }
+
+    private static String processChunk(String[] lines) {
+        StringBuilder output = new StringBuilder(lines.length * 24);
+
+        for (String line : lines) {
+            if (!line.isEmpty()) output.append(computeNewFilename(line));
+
+            output.append(System.lineSeparator());
+        }
+
+        return output.toString();
+    }
+
+    private static String awaitChunk(Future<String> chunk) throws InterruptedException {
+        try {
+            return chunk.get();
+        } catch (ExecutionException executionException) {
+            throw new IllegalStateException("Could not process filenames", executionException.getCause());
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import java.awt.*;
+import java.awt.datatransfer.*;
+import java.io.IOException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The clipboard of the desktop, through AWT.
+ * <p>
+ * The backend remembers the contents it last wrote, which are still on the clipboard as long as the clipboard is
+ * owned. Ownership is lost when another application sets the clipboard ({@link ClipboardOwner}) or changes its flavors
+ * ({@link FlavorListener}), only then the clipboard itself has to be read again.
+ */
+public final class AwtClipboardBackend implements ClipboardBackend {
+
+    private final Clipboard clipboard;
+
+    @Nullable private volatile StringSelection lastWrittenSelection;
+
+    @Nullable private volatile String lastWrittenText;
+
+    private volatile boolean isClipboardOwned;
+
+    private final ClipboardOwner clipboardOwner = (lostClipboard, lostContents) -> {
+        if (lostContents == lastWrittenSelection) isClipboardOwned = false;
+    };
+
+    public AwtClipboardBackend(Clipboard clipboard) {
+        this.clipboard = clipboard;
+
+        clipboard.addFlavorListener(flavorEvent -> checkClipboardOwnership());
+    }
+
+    /**
+     * Creates a backend for the system clipboard.
+     *
+     * @throws HeadlessException if there is no display
+     */
+    public static AwtClipboardBackend createSystemClipboardBackend() throws HeadlessException {
+        return new AwtClipboardBackend(Toolkit.getDefaultToolkit().getSystemClipboard());
+    }
+
+    /**
+     * Checks whether the clipboard still holds the contents that were last written. While the clipboard is owned, its
+     * contents are kept in memory, so this does not read the system clipboard.
+     */
+    private void checkClipboardOwnership() {
+        if (isClipboardOwned && clipboard.getContents(null) != lastWrittenSelection) isClipboardOwned = false;
+    }
+
+    /**
+     * Returns the text on the clipboard. As long as the clipboard still holds the text that was last written, that
+     * text is returned without reading the system clipboard.
+     */
+    @Override
+    @Nullable public String getText() {
+        checkClipboardOwnership();
+
+        @Nullable String ownedText = isClipboardOwned ? lastWrittenText : null;
+
+        if (ownedText != null) return ownedText;
+
+        @Nullable Transferable clipboardContents = clipboard.getContents(null);
+        boolean clipboardHasString =
+            clipboardContents != null && clipboardContents.isDataFlavorSupported(DataFlavor.stringFlavor);
+
+        if (!clipboardHasString) return null;
+
+        try {
+            return (String) clipboardContents.getTransferData(DataFlavor.stringFlavor);
+        } catch (IOException | UnsupportedFlavorException exception) {
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized void setText(String text) throws IllegalStateException {
+        StringSelection textStringSelection = new StringSelection(text);
+
+        clipboard.setContents(textStringSelection, clipboardOwner);
+
+        lastWrittenText = text;
+        lastWrittenSelection = textStringSelection;
+        isClipboardOwned = true;
+    }
+
+    @Override
+    public String getName() {
+        return "system clipboard";
+    }
+}
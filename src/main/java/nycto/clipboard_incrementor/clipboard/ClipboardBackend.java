@@ -0,0 +1,45 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Where the incremented filenames end up. Besides the system clipboard there are backends that keep the text in
+ * memory or write it to a file or the standard output, so the application also runs on machines without a display.
+ */
+public interface ClipboardBackend {
+    /**
+     * Returns the text on the clipboard, or {@code null} if it does not contain text.
+     */
+    @Nullable String getText();
+
+    /**
+     * Sets the text on the clipboard.
+     *
+     * @throws IllegalStateException if the clipboard is currently unavailable, setting the text can be retried later
+     */
+    void setText(String text) throws IllegalStateException;
+
+    /**
+     * Returns the name of the backend, for messages.
+     */
+    String getName();
+}
@@ -0,0 +1,61 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes the clipboard text to a file, replacing its previous contents. The text is also kept in memory, so it is
+ * never read back from the file.
+ */
+public final class FileClipboardBackend implements ClipboardBackend {
+
+    private final Path filePath;
+
+    @Nullable private volatile String text;
+
+    public FileClipboardBackend(Path filePath) {
+        this.filePath = filePath;
+    }
+
+    @Override
+    @Nullable public String getText() {
+        return text;
+    }
+
+    @Override
+    public synchronized void setText(String text) throws IllegalStateException {
+        try {
+            Files.writeString(filePath, text);
+        } catch (IOException | SecurityException exception) {
+            throw new IllegalStateException("Could not write clipboard file: " + filePath, exception);
+        }
+
+        this.text = text;
+    }
+
+    @Override
+    public String getName() {
+        return "file (" + filePath + ")";
+    }
+}
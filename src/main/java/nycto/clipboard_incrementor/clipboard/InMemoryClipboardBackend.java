@@ -0,0 +1,46 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps the clipboard text in memory, without locking. Used when there is no display and for tests and benchmarks.
+ */
+public final class InMemoryClipboardBackend implements ClipboardBackend {
+
+    private final AtomicReference<String> text = new AtomicReference<>();
+
+    @Override
+    @Nullable public String getText() {
+        return text.get();
+    }
+
+    @Override
+    public void setText(String text) {
+        this.text.set(text);
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+}
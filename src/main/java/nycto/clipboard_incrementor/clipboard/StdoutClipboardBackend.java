@@ -0,0 +1,55 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import java.io.PrintStream;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Prints every clipboard text on its own line, so the filenames can be piped into another program.
+ */
+public final class StdoutClipboardBackend implements ClipboardBackend {
+
+    private final PrintStream printStream;
+
+    @Nullable private volatile String text;
+
+    public StdoutClipboardBackend(PrintStream printStream) {
+        this.printStream = printStream;
+    }
+
+    @Override
+    @Nullable public String getText() {
+        return text;
+    }
+
+    @Override
+    public void setText(String text) {
+        printStream.println(text);
+        printStream.flush();
+
+        this.text = text;
+    }
+
+    @Override
+    public String getName() {
+        return "stdout";
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.command;
+
+/**
+ * Outcome of a command that was not typed on the console, with the message that would otherwise have been printed.
+ */
+public record CommandResult(boolean succeeded, String message) {
+    public static CommandResult success(String message) {
+        return new CommandResult(true, message);
+    }
+
+    public static CommandResult failure(String message) {
+        return new CommandResult(false, message);
+    }
+}
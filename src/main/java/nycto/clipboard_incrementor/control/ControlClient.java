@@ -0,0 +1,98 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.control;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import nycto.clipboard_incrementor.command.CommandResult;
+
+/**
+ * Sends a single command to the control server of a running instance.
+ */
+public final class ControlClient {
+
+    private ControlClient() {}
+
+    /**
+     * Runs the command that follows {@code --control} on the command line, for example {@code --control change /tmp}.
+     * The message of the response is written to stdout, or to stderr if the command failed.
+     *
+     * @return the exit status
+     */
+    public static int run(String[] arguments) {
+        if (arguments.length == 0) {
+            System.err.println("Usage: --control <command> [arguments]");
+            return 2;
+        }
+
+        Path socketPath = ControlServer.getSocketPath();
+
+        try {
+            CommandResult commandResult = send(socketPath, String.join(" ", arguments));
+
+            if (commandResult.succeeded()) {
+                System.out.println(commandResult.message());
+                return 0;
+            }
+
+            System.err.println(commandResult.message());
+            return 1;
+        } catch (IOException ioException) {
+            System.err.println("Could not connect to control socket " + socketPath + ": " + ioException.getMessage());
+            return 2;
+        }
+    }
+
+    public static CommandResult send(Path socketPath, String command) throws IOException {
+        try (SocketChannel socketChannel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            socketChannel.write(ByteBuffer.wrap((command + "\n").getBytes(StandardCharsets.UTF_8)));
+
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+            while (socketChannel.read(buffer) >= 0) {
+                response.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+
+            return parseResponse(response.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static CommandResult parseResponse(String response) throws IOException {
+        int statusEnd = response.indexOf('\n');
+
+        if (statusEnd < 0) throw new IOException("Incomplete response: " + response);
+
+        String status = response.substring(0, statusEnd);
+        String message = response.substring(statusEnd + 1).stripTrailing();
+
+        return switch (status) {
+            case "ok" -> CommandResult.success(message);
+            case "error" -> CommandResult.failure(message);
+            default -> throw new IOException("Unknown response status: " + status);
+        };
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.control;
+
+import static nycto.clipboard_incrementor.manager.ConfigManager.CONFIG_DIRECTORY_PATH;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getBoolean;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import nycto.clipboard_incrementor.command.CommandResult;
+import nycto.clipboard_incrementor.manager.ConsoleManager;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Accepts commands from local tools on a Unix domain socket, so the running instance can be scripted without typing on
+ * its console.
+ * <p>
+ * Every connection carries one request: a single line with a command and its arguments, like {@code change <dir>},
+ * {@code print} or {@code stats}. The response is {@code ok} or {@code error} on the first line followed by the
+ * message, after which the server closes the connection. A single thread serves the I/O of all connections with a
+ * selector, while every command runs on its own virtual thread, so a slow command like {@code add} of a large
+ * directory tree does not hold up the other clients.
+ * <p>
+ * The socket is only created in a directory that is accessible by its owner alone, so other users can never connect,
+ * not even in the moment between binding the socket and restricting its permissions.
+ */
+public final class ControlServer implements Closeable {
+
+    static final int MAX_REQUEST_LENGTH = 4096;
+
+    private static final Set<PosixFilePermission> OWNER_PERMISSIONS = EnumSet.of(
+        PosixFilePermission.OWNER_READ,
+        PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.OWNER_EXECUTE
+    );
+
+    @Nullable private static ControlServer controlServer;
+
+    private final Path socketPath;
+    private final Function<String, CommandResult> commandExecutor;
+    private final Selector selector;
+    private final ServerSocketChannel serverSocketChannel;
+    private final Thread thread;
+    private final ExecutorService commandExecutorService = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Connections whose command completed, waiting for the selector thread to write their response
+     */
+    private final Queue<SelectionKey> completedKeys = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed;
+
+    ControlServer(Path socketPath, Function<String, CommandResult> commandExecutor) throws IOException {
+        this.socketPath = socketPath;
+        this.commandExecutor = commandExecutor;
+
+        checkOwnerOnly(socketPath.toAbsolutePath().getParent());
+        removeStaleSocket(socketPath);
+
+        selector = Selector.open();
+        serverSocketChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+
+        try {
+            serverSocketChannel.bind(UnixDomainSocketAddress.of(socketPath));
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException | RuntimeException exception) {
+            serverSocketChannel.close();
+            selector.close();
+            throw exception;
+        }
+
+        thread = new Thread(this::run, "control-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Starts the control server on the socket of the {@code control.socket} setting, whose directory is created
+     * accessible by its owner alone if it does not exist yet, unless it is disabled with the
+     * {@code control.enabled} setting or already running.
+     */
+    public static synchronized void startControlServer() {
+        if (controlServer != null || !getBoolean("control.enabled", true)) return;
+
+        Path socketPath = getSocketPath();
+
+        try {
+            createOwnerOnlyDirectory(socketPath.toAbsolutePath().getParent());
+            controlServer = new ControlServer(socketPath, ConsoleManager::executeCommand);
+        } catch (IOException | UnsupportedOperationException | InvalidPathException | SecurityException exception) {
+            System.err.println("Could not start control server on " + socketPath + ": " + exception.getMessage());
+        }
+    }
+
+    public static synchronized void closeControlServer() {
+        if (controlServer == null) return;
+
+        controlServer.close();
+        controlServer = null;
+    }
+
+    static Path getSocketPath() {
+        return Path.of(
+            getString("control.socket", CONFIG_DIRECTORY_PATH.resolve("control").resolve("control.sock").toString())
+        );
+    }
+
+    /**
+     * Deletes the socket file that an instance which did not stop cleanly left behind.
+     *
+     * @throws IOException if another instance is still listening on the socket
+     */
+    private static void removeStaleSocket(Path socketPath) throws IOException {
+        if (!Files.exists(socketPath)) return;
+
+        if (isListening(socketPath)) throw new IOException("Another instance is already listening on the socket");
+
+        Files.deleteIfExists(socketPath);
+    }
+
+    private static boolean isListening(Path socketPath) {
+        try (SocketChannel socketChannel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+            return socketChannel.isConnected();
+        } catch (IOException ioException) {
+            return false;
+        }
+    }
+
+    private static boolean hasPosixPermissions(Path directoryPath) {
+        return Files.getFileAttributeView(directoryPath, PosixFileAttributeView.class) != null;
+    }
+
+    /**
+     * Creates the directory of the socket, which is only accessible by its owner if the file system has POSIX
+     * permissions.
+     */
+    private static void createOwnerOnlyDirectory(Path directoryPath) throws IOException {
+        if (Files.isDirectory(directoryPath)) return;
+
+        Files.createDirectories(directoryPath.getParent());
+
+        if (hasPosixPermissions(directoryPath.getParent())) {
+            Files.createDirectory(directoryPath, PosixFilePermissions.asFileAttribute(OWNER_PERMISSIONS));
+        } else {
+            Files.createDirectory(directoryPath);
+        }
+    }
+
+    /**
+     * @throws IOException if other users can access the directory of the socket
+     */
+    private static void checkOwnerOnly(Path directoryPath) throws IOException {
+        if (!hasPosixPermissions(directoryPath)) return;
+
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(directoryPath);
+
+        if (!OWNER_PERMISSIONS.containsAll(permissions)) {
+            throw new IOException("Directory of the socket must only be accessible by its owner: " + directoryPath);
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                selector.select();
+
+                @Nullable SelectionKey completedKey;
+
+                while ((completedKey = completedKeys.poll()) != null) {
+                    if (completedKey.isValid()) completedKey.interestOps(SelectionKey.OP_WRITE);
+                }
+
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+
+                while (selectedKeys.hasNext()) {
+                    SelectionKey selectionKey = selectedKeys.next();
+                    selectedKeys.remove();
+
+                    if (!selectionKey.isValid()) continue;
+
+                    if (selectionKey.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+
+                    try {
+                        if (selectionKey.isReadable()) read(selectionKey);
+                        if (selectionKey.isValid() && selectionKey.isWritable()) write(selectionKey);
+                    } catch (IOException ioException) {
+                        /* The client went away, only its own connection is affected */
+                        closeConnection(selectionKey);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException exception) {
+            if (!closed) System.err.println("Control server stopped unexpectedly: " + exception.getMessage());
+        } finally {
+            for (SelectionKey selectionKey : selector.keys()) closeConnection(selectionKey);
+
+            try {
+                selector.close();
+            } catch (IOException ioException) {
+                System.err.println("Could not close control server selector");
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        @Nullable SocketChannel socketChannel = serverSocketChannel.accept();
+
+        if (socketChannel == null) return;
+
+        socketChannel.configureBlocking(false);
+        socketChannel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey selectionKey) throws IOException {
+        SocketChannel socketChannel = (SocketChannel) selectionKey.channel();
+        Connection connection = (Connection) selectionKey.attachment();
+        ByteBuffer request = connection.request;
+        int searchStart = request.position();
+        boolean endOfStream = socketChannel.read(request) < 0;
+
+        for (int i = searchStart; i < request.position(); i++) {
+            if (request.get(i) == '\n') {
+                respond(selectionKey, connection, decode(request, i));
+                return;
+            }
+        }
+
+        if (endOfStream) {
+            /* Requests may leave out the line separator when the client closes its side after sending */
+            if (request.position() == 0) {
+                closeConnection(selectionKey);
+            } else {
+                respond(selectionKey, connection, decode(request, request.position()));
+            }
+        } else if (!request.hasRemaining()) {
+            connection.response = encode(
+                CommandResult.failure("Request is longer than " + MAX_REQUEST_LENGTH + " bytes")
+            );
+            selectionKey.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    private static String decode(ByteBuffer request, int length) {
+        String line = new String(request.array(), 0, length, StandardCharsets.UTF_8);
+
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+    /**
+     * Executes the command off the selector thread. The connection is not selected until the response is ready.
+     */
+    private void respond(SelectionKey selectionKey, Connection connection, String line) {
+        selectionKey.interestOps(0);
+
+        try {
+            commandExecutorService.execute(() -> {
+                CommandResult commandResult;
+
+                try {
+                    commandResult = commandExecutor.apply(line);
+                } catch (RuntimeException runtimeException) {
+                    commandResult = CommandResult.failure(
+                        "Could not execute command: " + runtimeException.getMessage()
+                    );
+                }
+
+                connection.response = encode(commandResult);
+                completedKeys.add(selectionKey);
+                selector.wakeup();
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            /* The server is closing */
+            closeConnection(selectionKey);
+        }
+    }
+
+    private static ByteBuffer encode(CommandResult commandResult) {
+        String response = (commandResult.succeeded() ? "ok" : "error") + "\n" + commandResult.message() + "\n";
+
+        return ByteBuffer.wrap(response.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void write(SelectionKey selectionKey) throws IOException {
+        SocketChannel socketChannel = (SocketChannel) selectionKey.channel();
+        @Nullable ByteBuffer response = ((Connection) selectionKey.attachment()).response;
+
+        if (response == null) return;
+
+        socketChannel.write(response);
+
+        if (!response.hasRemaining()) closeConnection(selectionKey);
+    }
+
+    private static void closeConnection(SelectionKey selectionKey) {
+        selectionKey.cancel();
+
+        try {
+            selectionKey.channel().close();
+        } catch (IOException ioException) {
+            /* Nothing left to clean up */
+        }
+    }
+
+    /**
+     * Stops the server thread and deletes the socket file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        commandExecutorService.shutdown();
+        selector.wakeup();
+
+        try {
+            thread.join(1000);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            Files.deleteIfExists(socketPath);
+            System.out.println("Successfully closed control server");
+        } catch (IOException ioException) {
+            System.err.println("Could not delete control socket: " + socketPath);
+        }
+    }
+
+    private static final class Connection {
+
+        private final ByteBuffer request = ByteBuffer.allocate(MAX_REQUEST_LENGTH);
+
+        /* Set by the command thread, read by the selector thread */
+        @Nullable private volatile ByteBuffer response;
+    }
+}
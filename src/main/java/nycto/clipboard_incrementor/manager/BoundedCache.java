@@ -0,0 +1,129 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.io.Serial;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A concurrent cache that holds at most a fixed number of entries and evicts the least recently used entry first.
+ * <p>
+ * The entries are spread over stripes by the hash of their key, and every stripe is an access-ordered map with its own
+ * lock, so threads that look up different keys rarely wait for each other. Values are computed outside the lock.
+ */
+final class BoundedCache<K, V> {
+
+    private static final int MAX_STRIPE_COUNT = 16;
+
+    private final Stripe<K, V>[] stripes;
+    private final LongAdder hits;
+    private final LongAdder misses;
+
+    /**
+     * @param maximumSize the maximum number of entries, divided over the stripes. Small caches use fewer stripes, so
+     *                    every stripe holds at least one entry
+     * @param hits        counts the lookups that found their key
+     * @param misses      counts the lookups that computed their value
+     * @throws IllegalArgumentException if the maximum size is not positive
+     */
+    @SuppressWarnings("unchecked")
+    BoundedCache(int maximumSize, LongAdder hits, LongAdder misses) throws IllegalArgumentException {
+        if (maximumSize < 1) throw new IllegalArgumentException("Cache size must be positive: " + maximumSize);
+
+        /* A power of two, so the stripe of a key can be selected with a mask */
+        int stripeCount = Math.min(MAX_STRIPE_COUNT, Integer.highestOneBit(maximumSize));
+
+        this.stripes = (Stripe<K, V>[]) new Stripe<?, ?>[stripeCount];
+        this.hits = hits;
+        this.misses = misses;
+
+        /* The remainder goes to the first stripes, so the capacities add up to exactly the maximum size */
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe<>(maximumSize / stripeCount + (i < maximumSize % stripeCount ? 1 : 0));
+        }
+    }
+
+    private Stripe<K, V> getStripe(Object key) {
+        int hash = key.hashCode();
+
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Returns the cached value of a key, or computes and caches it if the key is not cached. Two threads that miss the
+     * same key at the same time may both compute its value.
+     */
+    V get(K key, Function<? super K, ? extends V> loader) {
+        Stripe<K, V> stripe = getStripe(key);
+        @Nullable V value;
+
+        synchronized (stripe) {
+            value = stripe.get(key);
+        }
+
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+
+        misses.increment();
+        value = loader.apply(key);
+
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+
+        return value;
+    }
+
+    int size() {
+        int size = 0;
+
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+
+        return size;
+    }
+
+    private static final class Stripe<K, V> extends LinkedHashMap<K, V> {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Stripe(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldestEntry) {
+            return size() > capacity;
+        }
+    }
+}
@@ -19,47 +19,176 @@
 
 package nycto.clipboard_incrementor.manager;
 
-import java.awt.*;
-import java.awt.datatransfer.*;
-import java.io.IOException;
+import static nycto.clipboard_incrementor.manager.ConfigManager.CONFIG_DIRECTORY_PATH;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getLong;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getString;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.CLIPBOARD_FAILURES;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.CLIPBOARD_WRITES;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.isFlightRecorderInitialized;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import nycto.clipboard_incrementor.clipboard.*;
+import nycto.clipboard_incrementor.metrics.ClipboardWriteEvent;
 import org.jetbrains.annotations.Nullable;
 
 public class ClipboardManager {
 
-    private static Clipboard clipboard = Toolkit.getDefaultToolkit().getSystemClipboard();
+    private static final long DEFAULT_QUIET_PERIOD_MILLIS = 50;
+    private static final long DEFAULT_RETRY_INITIAL_DELAY_MILLIS = 50;
+    private static final long DEFAULT_RETRY_MAX_DELAY_MILLIS = 2000;
+    private static final long DEFAULT_RETRY_MAX_ATTEMPTS = 8;
+
+    @Nullable private static volatile ClipboardBackend clipboardBackend;
+
+    @Nullable private static ClipboardWriter clipboardWriter;
 
     private ClipboardManager() {}
 
-    static Clipboard getClipboard() {
-        return clipboard;
+    /**
+     * Creates the clipboard backend that is selected with the {@code clipboard.backend} setting: {@code awt},
+     * {@code memory}, {@code stdout}, {@code file} (written to the {@code clipboard.file} setting) or {@code auto},
+     * which uses the system clipboard unless there is no display. AWT is only loaded for the system clipboard.
+     */
+    static ClipboardBackend createClipboardBackend() {
+        String backend = getString("clipboard.backend", "auto").toLowerCase(Locale.ROOT);
+
+        if (backend.equals("auto")) backend = GraphicsEnvironment.isHeadless() ? "memory" : "awt";
+
+        return switch (backend) {
+            case "awt" -> createSystemClipboardBackend();
+            case "memory" -> new InMemoryClipboardBackend();
+            case "stdout" -> new StdoutClipboardBackend(System.out);
+            case "file" -> new FileClipboardBackend(
+                Path.of(getString("clipboard.file", CONFIG_DIRECTORY_PATH.resolve("clipboard.txt").toString()))
+            );
+            default -> {
+                System.err.println("Unknown clipboard backend: " + backend + ", keeping clipboard text in memory");
+                yield new InMemoryClipboardBackend();
+            }
+        };
     }
 
-    static void setClipboard(Clipboard clipboard) {
-        ClipboardManager.clipboard = clipboard;
+    private static ClipboardBackend createSystemClipboardBackend() {
+        try {
+            return AwtClipboardBackend.createSystemClipboardBackend();
+        } catch (HeadlessException | SecurityException exception) {
+            System.err.println("System clipboard is not available, keeping clipboard text in memory");
+            return new InMemoryClipboardBackend();
+        }
     }
 
-    @Nullable public static String getClipboardText() {
-        @Nullable Transferable clipboardContents = clipboard.getContents(null);
-        boolean clipboardHasString =
-            clipboardContents != null && clipboardContents.isDataFlavorSupported(DataFlavor.stringFlavor);
+    /**
+     * Prints the status messages to standard error when the {@code stdout} clipboard backend is selected, so only the
+     * clipboard texts end up on standard output. The backend is created first, so it keeps the original standard
+     * output.
+     */
+    public static void redirectStatusOutput() {
+        if (!getString("clipboard.backend", "auto").equalsIgnoreCase("stdout")) return;
 
-        if (!clipboardHasString) return null;
+        getClipboardBackend();
+        System.setOut(System.err);
+    }
 
-        try {
-            return (String) clipboardContents.getTransferData(DataFlavor.stringFlavor);
-        } catch (IOException | UnsupportedFlavorException exception) {
-            return null;
+    static ClipboardBackend getClipboardBackend() {
+        @Nullable ClipboardBackend backend = clipboardBackend;
+
+        if (backend != null) return backend;
+
+        synchronized (ClipboardManager.class) {
+            if (clipboardBackend == null) clipboardBackend = createClipboardBackend();
+
+            return clipboardBackend;
+        }
+    }
+
+    static synchronized void setClipboardBackend(ClipboardBackend clipboardBackend) {
+        ClipboardManager.clipboardBackend = clipboardBackend;
+    }
+
+    private static synchronized ClipboardWriter getOrCreateClipboardWriter() {
+        if (clipboardWriter == null) {
+            clipboardWriter = new ClipboardWriter(
+                ClipboardManager::setClipboardText,
+                getLong("clipboard.quiet-period-ms", DEFAULT_QUIET_PERIOD_MILLIS),
+                getLong("clipboard.retry.initial-delay-ms", DEFAULT_RETRY_INITIAL_DELAY_MILLIS),
+                getLong("clipboard.retry.max-delay-ms", DEFAULT_RETRY_MAX_DELAY_MILLIS),
+                (int) getLong("clipboard.retry.max-attempts", DEFAULT_RETRY_MAX_ATTEMPTS)
+            );
         }
+
+        return clipboardWriter;
+    }
+
+    /**
+     * Stops the clipboard writer thread, after it wrote the clipboard text that is still waiting.
+     */
+    public static synchronized void closeClipboardWriter() {
+        if (clipboardWriter == null) return;
+
+        clipboardWriter.close(TimeUnit.SECONDS.toMillis(1));
+        clipboardWriter = null;
     }
 
-    public static void setClipboardText(String clipboardText) throws IllegalStateException {
-        StringSelection clipboardTextStringSelection = new StringSelection(clipboardText);
+    @Nullable public static String getClipboardText() {
+        return getClipboardBackend().getText();
+    }
+
+    /**
+     * Sets the clipboard text, unless the clipboard already holds this text.
+     */
+    public static synchronized void setClipboardText(String clipboardText) throws IllegalStateException {
+        ClipboardBackend backend = getClipboardBackend();
+        @Nullable ClipboardWriteEvent clipboardWriteEvent = isFlightRecorderInitialized()
+            ? new ClipboardWriteEvent()
+            : null;
+
+        if (clipboardWriteEvent != null) clipboardWriteEvent.begin();
 
         try {
-            clipboard.setContents(clipboardTextStringSelection, null);
+            if (clipboardText.equals(backend.getText())) {
+                if (clipboardWriteEvent != null) clipboardWriteEvent.skipped = true;
+                return;
+            }
+
+            backend.setText(clipboardText);
+
+            if (clipboardWriteEvent != null) clipboardWriteEvent.succeeded = true;
+
+            CLIPBOARD_WRITES.increment();
             System.out.println("Clipboard is set to: " + clipboardText + System.lineSeparator());
         } catch (IllegalStateException illegalStateException) {
+            CLIPBOARD_FAILURES.increment();
             throw new IllegalStateException("Could not set clipboard text", illegalStateException);
+        } finally {
+            if (clipboardWriteEvent != null) clipboardWriteEvent.end();
+
+            if (clipboardWriteEvent != null && clipboardWriteEvent.shouldCommit()) {
+                clipboardWriteEvent.text = clipboardText;
+                clipboardWriteEvent.backend = backend.getName();
+                clipboardWriteEvent.commit();
+            }
         }
     }
+
+    /**
+     * Sets the clipboard text on the clipboard writer thread, without waiting for the clipboard. When text is set
+     * several times in quick succession, only the last text is written.
+     */
+    public static void setClipboardTextAsync(String clipboardText) {
+        setClipboardTextAsync(clipboardText, System.nanoTime());
+    }
+
+    /**
+     * Sets the clipboard text on the clipboard writer thread, without waiting for the clipboard.
+     *
+     * @param eventNanos the {@link System#nanoTime()} at which the event that led to this text was received, to
+     *                   measure the time until the text is on the clipboard
+     */
+    public static void setClipboardTextAsync(String clipboardText, long eventNanos) {
+        getOrCreateClipboardWriter().submit(clipboardText, eventNanos);
+    }
 }
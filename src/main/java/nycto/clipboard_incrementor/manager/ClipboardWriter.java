@@ -0,0 +1,173 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.CLIPBOARD_FAILURES;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.EVENT_TO_CLIPBOARD_LATENCY;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes text to the clipboard on its own thread, so the threads that submit text never block on a clipboard that is
+ * held by another application. This is a platform thread rather than a virtual one, because the AWT clipboard is
+ * accessed from synchronized code in the toolkit, which would pin the carrier thread of a virtual thread.
+ * <p>
+ * Submitted text goes into a single-slot mailbox in which the latest text wins: after the first text of a burst
+ * arrives, the writer waits for a quiet period and only writes the text that is in the mailbox by then. Writes that
+ * fail with an {@link IllegalStateException} are retried with an exponential backoff, unless newer text arrives in
+ * the meantime. Any other exception is not retried, but does not stop the writer either.
+ */
+final class ClipboardWriter implements Runnable {
+
+    private final Consumer<String> clipboardTextSetter;
+    private final long quietPeriodNanos;
+    private final long initialRetryDelayNanos;
+    private final long maxRetryDelayNanos;
+    private final int maxAttemptCount;
+
+    private final AtomicReference<PendingText> mailbox = new AtomicReference<>();
+    private final Thread thread;
+
+    private volatile boolean closed;
+
+    /**
+     * @param clipboardTextSetter sets the clipboard text, throwing an {@link IllegalStateException} if the clipboard
+     *                            is currently unavailable
+     */
+    ClipboardWriter(
+        Consumer<String> clipboardTextSetter,
+        long quietPeriodMillis,
+        long initialRetryDelayMillis,
+        long maxRetryDelayMillis,
+        int maxAttemptCount
+    ) {
+        this.clipboardTextSetter = clipboardTextSetter;
+        this.quietPeriodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, quietPeriodMillis));
+        this.initialRetryDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, initialRetryDelayMillis));
+        this.maxRetryDelayNanos = Math.max(initialRetryDelayNanos, TimeUnit.MILLISECONDS.toNanos(maxRetryDelayMillis));
+        this.maxAttemptCount = Math.max(1, maxAttemptCount);
+
+        thread = Thread.ofPlatform().name("clipboard-writer").daemon().start(this);
+    }
+
+    /**
+     * Replaces the text that is waiting to be written, without blocking.
+     */
+    void submit(String clipboardText) {
+        submit(clipboardText, System.nanoTime());
+    }
+
+    /**
+     * Replaces the text that is waiting to be written, without blocking.
+     *
+     * @param eventNanos the {@link System#nanoTime()} at which the event that led to this text was received
+     */
+    void submit(String clipboardText, long eventNanos) {
+        if (closed) throw new IllegalStateException("Clipboard writer is closed");
+
+        mailbox.set(new PendingText(clipboardText, eventNanos));
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the writer thread after it wrote the text that is still waiting, giving it at most the given time. A write
+     * that failed is not retried anymore.
+     */
+    void close(long timeoutMillis) {
+        closed = true;
+        LockSupport.unpark(thread);
+
+        try {
+            thread.join(Math.max(1, timeoutMillis));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closed || mailbox.get() != null) {
+            if (mailbox.get() == null) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            /* Let the burst settle, the text that is in the mailbox afterwards is the only one that gets written */
+            parkUntil(System.nanoTime() + quietPeriodNanos);
+
+            @Nullable PendingText pendingText = mailbox.getAndSet(null);
+
+            if (pendingText != null) write(pendingText);
+        }
+    }
+
+    private void write(PendingText pendingText) {
+        long retryDelayNanos = initialRetryDelayNanos;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                clipboardTextSetter.accept(pendingText.clipboardText());
+                EVENT_TO_CLIPBOARD_LATENCY.record(System.nanoTime() - pendingText.eventNanos());
+                return;
+            } catch (IllegalStateException illegalStateException) {
+                if (attempt == maxAttemptCount) {
+                    System.err.println(
+                        "Could not set clipboard text after " + attempt + " attempts: " + pendingText.clipboardText()
+                    );
+                    return;
+                }
+            } catch (RuntimeException runtimeException) {
+                CLIPBOARD_FAILURES.increment();
+                System.err.println(
+                    "Could not set clipboard text: " + pendingText.clipboardText() + " (" + runtimeException + ")"
+                );
+                return;
+            }
+
+            parkUntil(System.nanoTime() + retryDelayNanos);
+            retryDelayNanos = Math.min(maxRetryDelayNanos, retryDelayNanos * 2);
+
+            /* Newer text replaces the text that could not be written */
+            if (mailbox.get() != null) return;
+
+            if (closed) {
+                System.err.println("Could not set clipboard text before closing: " + pendingText.clipboardText());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits until the deadline, or until the writer is closed.
+     */
+    private void parkUntil(long deadlineNanos) {
+        long remainingNanos;
+
+        while (!closed && (remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remainingNanos);
+        }
+    }
+
+    private record PendingText(String clipboardText, long eventNanos) {}
+}
@@ -0,0 +1,115 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the application settings from {@code config.properties} in the config directory. Every setting can be
+ * overridden with a system property of the same name prefixed with {@code clipboard_incrementor.}, for example
+ * {@code -Dclipboard_incrementor.watcher.debounce-window-ms=250}.
+ * <p>
+ * The config file is a standard properties file, so a backslash has to be written as {@code \\}, for example in
+ * Windows paths ({@code C:\\Users\\me\\Scans}, or {@code C:/Users/me/Scans}) and in regular expressions
+ * ({@code \\d+}).
+ */
+public class ConfigManager {
+
+    public static final Path CONFIG_DIRECTORY_PATH = Path.of(System.getProperty("user.home"), ".clipboard-incrementor");
+
+    private static final Path CONFIG_FILE_PATH = CONFIG_DIRECTORY_PATH.resolve("config.properties");
+
+    private static final String SYSTEM_PROPERTY_PREFIX = "clipboard_incrementor.";
+
+    private static volatile Properties properties = loadProperties();
+
+    private ConfigManager() {}
+
+    static Properties loadProperties() {
+        if (!Files.isRegularFile(CONFIG_FILE_PATH)) return new Properties();
+
+        try (Reader reader = Files.newBufferedReader(CONFIG_FILE_PATH)) {
+            return loadProperties(reader);
+        } catch (IOException | IllegalArgumentException exception) {
+            System.err.println("Could not read config file: " + CONFIG_FILE_PATH + System.lineSeparator());
+        } catch (SecurityException securityException) {
+            System.err.println("Permission denied to read config file: " + CONFIG_FILE_PATH + System.lineSeparator());
+        }
+
+        return new Properties();
+    }
+
+    static Properties loadProperties(Reader reader) throws IOException {
+        Properties properties = new Properties();
+        properties.load(reader);
+
+        return properties;
+    }
+
+    static void setProperties(Properties properties) {
+        ConfigManager.properties = properties;
+    }
+
+    @Nullable private static String getProperty(String key) {
+        try {
+            @Nullable String systemProperty = System.getProperty(SYSTEM_PROPERTY_PREFIX + key);
+
+            if (systemProperty != null) return systemProperty.trim();
+        } catch (SecurityException securityException) {
+            /* Fall back to the config file */
+        }
+
+        @Nullable String property = properties.getProperty(key);
+
+        return property != null ? property.trim() : null;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        @Nullable String property = getProperty(key);
+
+        if (property == null || property.isEmpty()) return defaultValue;
+
+        return Boolean.parseBoolean(property);
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        @Nullable String property = getProperty(key);
+
+        if (property == null || property.isEmpty()) return defaultValue;
+
+        try {
+            return Long.parseLong(property);
+        } catch (NumberFormatException numberFormatException) {
+            System.err.println("Invalid number for setting " + key + ": " + property + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static String getString(String key, String defaultValue) {
+        @Nullable String property = getProperty(key);
+
+        return property == null || property.isEmpty() ? defaultValue : property;
+    }
+}
@@ -22,17 +22,27 @@ package nycto.clipboard_incrementor.manager;
 import static nycto.clipboard_incrementor.Main.openIssuesPage;
 import static nycto.clipboard_incrementor.Main.stopApplication;
 import static nycto.clipboard_incrementor.manager.DirectoryManager.*;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.formatStats;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.printStats;
 
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Scanner;
 import nycto.clipboard_incrementor.command.Command;
+import nycto.clipboard_incrementor.command.CommandResult;
+import org.jetbrains.annotations.Nullable;
 
 public class ConsoleManager {
 
     private static final List<Command> COMMANDS = List.of(
         new Command("change", "Change the directory to watch for new files", List.of("c")),
+        new Command("add", "Add a directory to watch for new files", List.of("a")),
+        new Command("remove", "Stop watching a directory for new files", List.of("r", "rm")),
+        new Command("list", "List all directories that are being watched", List.of("l", "ls")),
         new Command("print", "Print the path of the directory that is currently being watched", List.of("p")),
         new Command("open", "Open the directory that is currently being watched", List.of("o")),
+        new Command("stats", "Show statistics of the handled files and clipboard writes", List.of("st")),
         new Command("help", "Show the available commands", List.of("h", "commands")),
         new Command("issue", "Report an issue", List.of("i", "report")),
         new Command("stop", "Stop the application", List.of("s", "exit", "quit"))
@@ -46,13 +56,24 @@ public class ConsoleManager {
     private ConsoleManager() {}
 
     private static void printCommands() {
-        System.out.println("Available commands:");
+        System.out.println(formatCommands());
+    }
+
+    private static String formatCommands() {
+        StringBuilder stringBuilder = new StringBuilder("Available commands:");
 
         for (Command command : COMMANDS) {
             String aliases = command.aliases().isEmpty() ? "" : " (" + String.join(", ", command.aliases()) + ")";
 
-            System.out.println(command.name() + aliases + ": " + command.description());
+            stringBuilder
+                .append(System.lineSeparator())
+                .append(command.name())
+                .append(aliases)
+                .append(": ")
+                .append(command.description());
         }
+
+        return stringBuilder.toString();
     }
 
     public static void closeStdinScanner() {
@@ -83,8 +104,12 @@ public class ConsoleManager {
 
                 switch (commandToExecute) {
                     case "change" -> changeDirectory();
+                    case "add" -> addDirectory();
+                    case "remove" -> removeDirectory();
+                    case "list" -> printWatchedDirectories();
                     case "print" -> printCurrentDirectoryMessage();
                     case "open" -> openCurrentDirectory();
+                    case "stats" -> printStats();
                     case "help" -> printCommands();
                     case "issue" -> openIssuesPage();
                     case "stop" -> {
@@ -98,6 +123,54 @@ public class ConsoleManager {
         }
     }
 
+    /**
+     * Executes a command that is not typed on the console, so it cannot ask follow-up questions: the arguments follow
+     * the command on the same line, like {@code change <directory>} or {@code add --recursive <directory>}. Commands
+     * that open a window or stop the application are only available on the console.
+     */
+    public static CommandResult executeCommand(String input) {
+        String[] commandAndArgument = input.trim().split("\\s+", 2);
+        String argument = commandAndArgument.length > 1 ? commandAndArgument[1] : "";
+        @Nullable Command commandToExecute = null;
+
+        for (Command command : COMMANDS) {
+            if (matchesCommandOrAlias(commandAndArgument[0], command)) commandToExecute = command;
+        }
+
+        if (commandToExecute == null) return CommandResult.failure("Unknown command: " + commandAndArgument[0]);
+
+        try {
+            return switch (commandToExecute.name()) {
+                case "change" -> argument.isEmpty()
+                    ? CommandResult.failure("Usage: change <directory>")
+                    : changeDirectory(Path.of(argument));
+                case "add" -> {
+                    String[] flagAndDirectory = argument.split("\\s+", 2);
+                    boolean recursive = flagAndDirectory[0].equals("--recursive") || flagAndDirectory[0].equals("-r");
+                    String directory = recursive ? (flagAndDirectory.length > 1 ? flagAndDirectory[1] : "") : argument;
+
+                    yield directory.isEmpty()
+                        ? CommandResult.failure("Usage: add [--recursive] <directory>")
+                        : addDirectory(Path.of(directory), recursive);
+                }
+                case "remove" -> argument.isEmpty()
+                    ? CommandResult.failure("Usage: remove <directory>")
+                    : removeDirectory(Path.of(argument));
+                case "list" -> getWatchedDirectories();
+                case "print" -> getCurrentDirectory();
+                case "stats" -> CommandResult.success(formatStats());
+                case "help" -> CommandResult.success(formatCommands());
+                default -> CommandResult.failure(
+                    "Command is only available on the console: " + commandToExecute.name()
+                );
+            };
+        } catch (InvalidPathException invalidPathException) {
+            return CommandResult.failure("Invalid directory path format: " + argument);
+        } catch (IllegalStateException illegalStateException) {
+            return CommandResult.failure(illegalStateException.getMessage());
+        }
+    }
+
     static String readConsoleInput() {
         return STDIN_SCANNER.nextLine().trim();
     }
@@ -21,56 +21,88 @@ package nycto.clipboard_incrementor.manager;
 
 import static nycto.clipboard_incrementor.Main.*;
 import static nycto.clipboard_incrementor.manager.ConsoleManager.readConsoleInput;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.getWatchedDirectoryPaths;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.isDirectoryWatched;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.isDirectoryWatchedRecursively;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.unwatchDirectory;
 
+import java.awt.Desktop;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.StringJoiner;
+import nycto.clipboard_incrementor.command.CommandResult;
+import nycto.clipboard_incrementor.watcher.DirectoryWatcher;
 import org.jetbrains.annotations.Nullable;
 
 public class DirectoryManager {
 
-    @Nullable private static Path watchedDirectoryPath;
+    @Nullable private static volatile Path watchedDirectoryPath;
 
     private DirectoryManager() {}
 
-    static void changeDirectory() {
-        System.out.println("Enter the " + (watchedDirectoryPath == null ? "" : "new ") + "directory path:");
-        @Nullable String newDirectory;
-        @Nullable Path newDirectoryPath = null;
+    static void addDirectory() {
+        System.out.println("Enter the path of the directory to add:");
+        Path directoryPath = readDirectoryPath();
 
-        while (newDirectoryPath == null || newDirectoryPath.equals(watchedDirectoryPath)) {
-            newDirectory = readConsoleInput();
+        while (isDirectoryWatched(directoryPath)) {
+            System.err.println(
+                "Directory is already being watched: " +
+                directoryPath +
+                System.lineSeparator() +
+                "Enter a different directory path:"
+            );
+            directoryPath = readDirectoryPath();
+        }
 
-            while (newDirectory.isEmpty()) {
-                System.err.println("Directory path cannot be empty. Enter a valid directory path:");
-                newDirectory = readConsoleInput();
-            }
+        System.out.println("Would you like to watch its subdirectories as well? (yes/no)");
+        boolean recursive = readConfirmation();
 
-            try {
-                newDirectoryPath = Path.of(newDirectory);
-
-                if (newDirectoryPath.equals(watchedDirectoryPath)) {
-                    System.err.println(
-                        "New directory path cannot be the same as current directory path" +
-                        System.lineSeparator() +
-                        "Enter a different directory path:"
-                    );
-                }
-            } catch (InvalidPathException invalidPathException) {
-                System.err.println(
-                    "Invalid directory path format: " +
-                    newDirectory +
-                    System.lineSeparator() +
-                    "Enter a valid directory path:"
-                );
-            }
+        if (directoryExists(directoryPath) || createNonExistingDirectory(directoryPath, "")) {
+            addWatchedDirectory(directoryPath, recursive);
+        }
+    }
+
+    /**
+     * Adds a directory without asking anything, for commands that are not typed on the console. The directory has to
+     * exist already.
+     */
+    static synchronized CommandResult addDirectory(Path directoryPath, boolean recursive) {
+        if (!directoryPath.isAbsolute()) {
+            return CommandResult.failure("Directory path must be absolute: " + directoryPath);
+        }
+
+        if (isDirectoryWatched(directoryPath)) {
+            return CommandResult.failure("Directory is already being watched: " + directoryPath);
+        }
+
+        if (!directoryExists(directoryPath)) return CommandResult.failure("Directory does not exist: " + directoryPath);
+
+        if (!addWatchedDirectory(directoryPath, recursive)) {
+            return CommandResult.failure("Could not watch directory: " + directoryPath);
+        }
+
+        return CommandResult.success("Watching directory " + directoryPath + " for new files...");
+    }
+
+    static void changeDirectory() {
+        System.out.println("Enter the " + (watchedDirectoryPath == null ? "" : "new ") + "directory path:");
+        Path newDirectoryPath = readDirectoryPath();
+
+        while (newDirectoryPath.equals(watchedDirectoryPath)) {
+            System.err.println(
+                "New directory path cannot be the same as current directory path" +
+                System.lineSeparator() +
+                "Enter a different directory path:"
+            );
+            newDirectoryPath = readDirectoryPath();
         }
 
         if (directoryExists(newDirectoryPath)) {
-            setWatchedDirectoryPath(newDirectoryPath);
-            submitDirectoryWatcher();
+            replaceWatchedDirectory(newDirectoryPath);
         } else {
             handleNonExistingDirectory(
                 newDirectoryPath,
@@ -79,6 +111,30 @@ public class DirectoryManager {
         }
     }
 
+    /**
+     * Changes the directory without asking anything, for commands that are not typed on the console. The directory has
+     * to exist already.
+     */
+    static synchronized CommandResult changeDirectory(Path newDirectoryPath) {
+        if (!newDirectoryPath.isAbsolute()) {
+            return CommandResult.failure("Directory path must be absolute: " + newDirectoryPath);
+        }
+
+        if (newDirectoryPath.equals(watchedDirectoryPath)) {
+            return CommandResult.failure("New directory path cannot be the same as current directory path");
+        }
+
+        if (!directoryExists(newDirectoryPath)) {
+            return CommandResult.failure("Directory does not exist: " + newDirectoryPath);
+        }
+
+        if (!replaceWatchedDirectory(newDirectoryPath)) {
+            return CommandResult.failure("Could not watch directory: " + newDirectoryPath);
+        }
+
+        return CommandResult.success("Watching directory " + newDirectoryPath + " for new files...");
+    }
+
     private static void createDirectory(Path directoryPath) {
         while (directoryExists(directoryPath)) {
             System.err.println(
@@ -132,6 +188,15 @@ public class DirectoryManager {
     }
 
     public static void handleNonExistingDirectory(Path directoryPath, String suffix) {
+        if (createNonExistingDirectory(directoryPath, suffix)) replaceWatchedDirectory(directoryPath);
+    }
+
+    /**
+     * Asks whether a non-existing directory should be created and creates it if so.
+     *
+     * @return whether the directory was created
+     */
+    private static boolean createNonExistingDirectory(Path directoryPath, String suffix) {
         System.out.println(
             "Directory " +
             directoryPath +
@@ -140,26 +205,14 @@ public class DirectoryManager {
             "Would you like to create it? (yes/no)"
         );
 
-        String consoleInput = readConsoleInput();
-
-        while (
-            !consoleInput.equalsIgnoreCase("y") &&
-            !consoleInput.equalsIgnoreCase("yes") &&
-            !consoleInput.equalsIgnoreCase("n") &&
-            !consoleInput.equalsIgnoreCase("no")
-        ) {
-            System.out.println("Invalid input. Enter 'yes' or 'no'");
-
-            consoleInput = readConsoleInput();
-        }
-
-        if (consoleInput.equalsIgnoreCase("y") || consoleInput.equalsIgnoreCase("yes")) {
-            createDirectory(directoryPath);
-            setWatchedDirectoryPath(directoryPath);
-            submitDirectoryWatcher();
-        } else {
+        if (!readConfirmation()) {
             System.out.println("Directory not created" + System.lineSeparator() + suffix);
+            return false;
         }
+
+        createDirectory(directoryPath);
+
+        return true;
     }
 
     static void openCurrentDirectory() {
@@ -172,7 +225,9 @@ public class DirectoryManager {
             return;
         }
 
-        if (!IS_DESKTOP_SUPPORTED || DESKTOP == null) {
+        @Nullable Desktop desktop = getDesktop();
+
+        if (!isDesktopSupported() || desktop == null) {
             System.err.println(
                 "Desktop class is not supported on this platform" +
                 OS_NAME_SUFFIX +
@@ -183,7 +238,7 @@ public class DirectoryManager {
             return;
         }
 
-        if (!IS_OPEN_ACTION_SUPPORTED) {
+        if (!isOpenActionSupported()) {
             System.err.println(
                 "Desktop class does not support the OPEN action" +
                 System.lineSeparator() +
@@ -194,7 +249,7 @@ public class DirectoryManager {
         }
 
         try {
-            DESKTOP.open(new File(watchedDirectoryPath.toString()));
+            desktop.open(new File(watchedDirectoryPath.toString()));
             System.out.println("Successfully opened directory: " + watchedDirectoryPath);
         } catch (IOException ioException) {
             System.err.println("Could not open directory: " + watchedDirectoryPath);
@@ -213,7 +268,211 @@ public class DirectoryManager {
             return;
         }
 
-        System.out.println("Watching directory " + watchedDirectoryPath + " for new files..." + System.lineSeparator());
+        printWatchingDirectoryMessage(watchedDirectoryPath);
+    }
+
+    static CommandResult getCurrentDirectory() {
+        @Nullable Path directoryPath = watchedDirectoryPath;
+
+        if (directoryPath == null) return CommandResult.failure("Directory path is not configured yet");
+
+        return CommandResult.success(directoryPath.toString());
+    }
+
+    private static void printWatchingDirectoryMessage(Path directoryPath) {
+        System.out.println("Watching directory " + directoryPath + " for new files..." + System.lineSeparator());
+    }
+
+    static void printWatchedDirectories() {
+        List<Path> watchedDirectoryPaths = getWatchedDirectoryPaths();
+
+        if (watchedDirectoryPaths.isEmpty()) {
+            System.err.println(
+                "No directories are being watched" +
+                System.lineSeparator() +
+                "Add a directory using the 'add' or 'change' command"
+            );
+            return;
+        }
+
+        watchedDirectoryPaths.sort(null);
+
+        System.out.println("Watched directories:");
+
+        for (Path directoryPath : watchedDirectoryPaths) {
+            System.out.println(directoryPath);
+        }
+    }
+
+    static CommandResult getWatchedDirectories() {
+        List<Path> watchedDirectoryPaths = getWatchedDirectoryPaths();
+
+        if (watchedDirectoryPaths.isEmpty()) return CommandResult.failure("No directories are being watched");
+
+        watchedDirectoryPaths.sort(null);
+
+        StringJoiner stringJoiner = new StringJoiner(System.lineSeparator());
+        watchedDirectoryPaths.forEach(directoryPath -> stringJoiner.add(directoryPath.toString()));
+
+        return CommandResult.success(stringJoiner.toString());
+    }
+
+    /**
+     * Reads 'yes' or 'no' from the console, asking again until one of them is entered.
+     */
+    private static boolean readConfirmation() {
+        String consoleInput = readConsoleInput();
+
+        while (
+            !consoleInput.equalsIgnoreCase("y") &&
+            !consoleInput.equalsIgnoreCase("yes") &&
+            !consoleInput.equalsIgnoreCase("n") &&
+            !consoleInput.equalsIgnoreCase("no")
+        ) {
+            System.out.println("Invalid input. Enter 'yes' or 'no'");
+
+            consoleInput = readConsoleInput();
+        }
+
+        return consoleInput.equalsIgnoreCase("y") || consoleInput.equalsIgnoreCase("yes");
+    }
+
+    /**
+     * Reads a directory path from the console, asking again until a non-empty and valid path is entered.
+     */
+    private static Path readDirectoryPath() {
+        while (true) {
+            String directory = readConsoleInput();
+
+            if (directory.isEmpty()) {
+                System.err.println("Directory path cannot be empty. Enter a valid directory path:");
+                continue;
+            }
+
+            try {
+                return Path.of(directory);
+            } catch (InvalidPathException invalidPathException) {
+                System.err.println(
+                    "Invalid directory path format: " +
+                    directory +
+                    System.lineSeparator() +
+                    "Enter a valid directory path:"
+                );
+            }
+        }
+    }
+
+    static void removeDirectory() {
+        if (getWatchedDirectoryPaths().isEmpty()) {
+            System.err.println("No directories are being watched");
+            return;
+        }
+
+        System.out.println("Enter the path of the directory to remove:");
+        Path directoryPath = readDirectoryPath();
+
+        if (!removeWatchedDirectory(directoryPath)) {
+            System.err.println("Directory is not being watched: " + directoryPath);
+            return;
+        }
+
+        System.out.println("Stopped watching directory " + directoryPath + System.lineSeparator());
+    }
+
+    /**
+     * Removes a directory without asking anything, for commands that are not typed on the console.
+     */
+    static CommandResult removeDirectory(Path directoryPath) {
+        if (!removeWatchedDirectory(directoryPath)) {
+            return CommandResult.failure("Directory is not being watched: " + directoryPath);
+        }
+
+        return CommandResult.success("Stopped watching directory " + directoryPath);
+    }
+
+    /**
+     * Starts watching a directory, making it the current directory if there is none yet. The console and the control
+     * commands both change the watched directories through this class, so they lock on it.
+     */
+    private static synchronized boolean addWatchedDirectory(Path directoryPath, boolean recursive) {
+        boolean current = watchedDirectoryPath == null;
+
+        if (current) setWatchedDirectoryPath(directoryPath);
+
+        boolean watched = watchDirectory(directoryPath, recursive);
+
+        if (current && !watched) setWatchedDirectoryPath(null);
+
+        return watched;
+    }
+
+    /**
+     * Stops watching a directory, clearing the current directory if it is no longer being watched.
+     */
+    private static synchronized boolean removeWatchedDirectory(Path directoryPath) {
+        if (!unwatchDirectory(directoryPath)) return false;
+
+        if (watchedDirectoryPath != null && !isDirectoryWatched(watchedDirectoryPath)) setWatchedDirectoryPath(null);
+
+        return true;
+    }
+
+    /**
+     * Stops watching the current directory and starts watching the new directory instead. The current directory is
+     * watched again if the new directory cannot be watched.
+     */
+    private static synchronized boolean replaceWatchedDirectory(Path newDirectoryPath) {
+        @Nullable Path previousDirectoryPath = watchedDirectoryPath;
+        boolean previousRecursive = false;
+        boolean previousWatched = false;
+
+        if (previousDirectoryPath != null) {
+            previousRecursive = isDirectoryWatchedRecursively(previousDirectoryPath);
+            previousWatched = unwatchDirectory(previousDirectoryPath);
+        }
+
+        setWatchedDirectoryPath(newDirectoryPath);
+
+        if (watchDirectory(newDirectoryPath, false)) return true;
+
+        setWatchedDirectoryPath(previousDirectoryPath);
+
+        if (previousDirectoryPath != null && previousWatched) watchDirectory(previousDirectoryPath, previousRecursive);
+
+        return false;
+    }
+
+    public static void watchDirectory(Path directoryPath) {
+        watchDirectory(directoryPath, false);
+    }
+
+    /**
+     * Starts watching a directory with the shared directory watcher, submitting the directory watcher if it is not
+     * running yet.
+     *
+     * @param recursive whether the subdirectories of the directory are watched as well
+     * @return whether the directory is being watched now
+     */
+    private static boolean watchDirectory(Path directoryPath, boolean recursive) {
+        try {
+            if (!DirectoryWatcher.watchDirectory(directoryPath, recursive)) {
+                System.err.println("Directory is already being watched: " + directoryPath);
+                return false;
+            }
+        } catch (IOException ioException) {
+            System.err.println("Could not watch directory: " + directoryPath);
+            return false;
+        } catch (SecurityException securityException) {
+            System.err.println("Permission denied to watch directory: " + directoryPath);
+            return false;
+        }
+
+        submitDirectoryWatcher();
+        printWatchingDirectoryMessage(directoryPath);
+
+        if (directoryPath.equals(watchedDirectoryPath)) DirectoryWatcher.primeClipboard(directoryPath);
+
+        return true;
     }
 
     public static @Nullable Path getWatchedDirectoryPath() {
@@ -19,114 +19,207 @@
 
 package nycto.clipboard_incrementor.manager;
 
-import java.math.BigInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getLong;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.FILENAME_CACHE_HITS;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.FILENAME_CACHE_MISSES;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.FILENAME_COMPUTATIONS;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.isFlightRecorderInitialized;
+
+import nycto.clipboard_incrementor.metrics.FilenameComputationEvent;
 import org.jetbrains.annotations.Nullable;
 
 public class FilenameManager {
 
-    private FilenameManager() {}
+    private static final long DEFAULT_CACHE_SIZE = 4096;
+
+    /**
+     * Longer filenames are not cached, so the memory of the cache stays bounded whatever names it is given
+     */
+    private static final int MAX_CACHED_FILENAME_LENGTH = 255;
 
-    private static int countLeadingZeros(String string) {
-        if (!string.startsWith("0") || !(string.length() > 1)) return 0;
+    /**
+     * New filenames per naming template and filename, or {@code null} if caching is disabled with a
+     * {@code naming.cache-size} of 0
+     */
+    @Nullable private static final BoundedCache<CacheKey, String> NEW_FILENAME_CACHE = createNewFilenameCache();
+
+    private FilenameManager() {}
 
-        Pattern leadingZeroPattern = Pattern.compile("^0+");
-        Matcher leadingZeroPatternMatcher = leadingZeroPattern.matcher(string);
+    @Nullable private static BoundedCache<CacheKey, String> createNewFilenameCache() {
+        long cacheSize = getLong("naming.cache-size", DEFAULT_CACHE_SIZE);
 
-        if (!leadingZeroPatternMatcher.find()) return 0;
+        if (cacheSize <= 0) return null;
 
-        return leadingZeroPatternMatcher.group().length();
+        return new BoundedCache<>(
+            (int) Math.min(cacheSize, Integer.MAX_VALUE),
+            FILENAME_CACHE_HITS,
+            FILENAME_CACHE_MISSES
+        );
     }
 
     public static String createNewFilename(String filename) {
-        return incrementLastNumberInFilename(removeFileExtensions(filename));
+        return createNewFilename(FilenameParts.parse(filename), NamingTemplate.DEFAULT);
     }
 
-    static String incrementLastNumberInFilename(String filenameWithoutExtensions) {
-        Pattern lastNumberPattern = Pattern.compile("(\\d+)(?!.*\\d)");
-        Matcher lastNumberPatternMatcher = lastNumberPattern.matcher(filenameWithoutExtensions);
-
-        if (!lastNumberPatternMatcher.find()) {
-            System.out.println(
-                "No number was found in the filename" +
-                System.lineSeparator() +
-                "Added \" (1)\" to the filename" +
-                System.lineSeparator()
-            );
-            return filenameWithoutExtensions + " (1)";
-        }
+    /**
+     * Creates the new filename with the rules of a naming template.
+     */
+    public static String createNewFilename(FilenameParts filenameParts, NamingTemplate namingTemplate) {
+        @Nullable FilenameComputationEvent filenameComputationEvent = isFlightRecorderInitialized()
+            ? new FilenameComputationEvent()
+            : null;
+
+        if (filenameComputationEvent != null) filenameComputationEvent.begin();
+
+        if (namingTemplate.isDefault() && !filenameParts.hasNumber()) printNoNumberFoundMessage();
+
+        String newFilename = getOrComputeNewFilename(filenameParts, namingTemplate);
 
-        String lastNumberString = lastNumberPatternMatcher.group(1);
-        @Nullable Number lastNumberParsed = parseNumber(lastNumberString);
-        @Nullable Number lastNumberIncremented = incrementNumber(lastNumberParsed);
-
-        if (lastNumberIncremented == null) {
-            System.out.println(
-                "Could not increment (last) number in filename" +
-                System.lineSeparator() +
-                "Added \" (1)\" to the filename"
-            );
-            return filenameWithoutExtensions + " (1)";
+        if (filenameComputationEvent != null) filenameComputationEvent.end();
+
+        if (filenameComputationEvent != null && filenameComputationEvent.shouldCommit()) {
+            filenameComputationEvent.filename = filenameParts.getFilename();
+            filenameComputationEvent.newFilename = newFilename;
+            filenameComputationEvent.commit();
         }
 
-        String lastNumberIncrementedString = lastNumberIncremented.toString();
-        String lastNumberParsedString = lastNumberParsed.toString();
-        int leadingZeroCount = countLeadingZeros(lastNumberString);
+        return newFilename;
+    }
 
-        if (leadingZeroCount > 0) {
-            if (
-                lastNumberIncrementedString.length() > lastNumberParsedString.length() || // Number increased in length
-                lastNumberString.length() == leadingZeroCount // Number was all zeros
-            ) {
-                leadingZeroCount--;
-            }
+    /**
+     * Creates the new filename like {@link #createNewFilename(String)}, without printing messages or recording
+     * metrics, for processing large numbers of filenames.
+     */
+    public static String computeNewFilename(String filename) {
+        if (NEW_FILENAME_CACHE == null || filename.length() > MAX_CACHED_FILENAME_LENGTH) {
+            return incrementLastNumber(FilenameParts.parse(filename), false);
+        }
+
+        return NEW_FILENAME_CACHE.get(
+            new CacheKey(NamingTemplate.DEFAULT, filename),
+            cacheKey -> incrementLastNumber(FilenameParts.parse(filename), false)
+        );
+    }
 
-            lastNumberIncrementedString = "0".repeat(leadingZeroCount) + lastNumberIncremented;
+    /**
+     * Looks up the new filename in the cache, or computes it if it is not cached. Templates that insert the date of
+     * today are never cached.
+     */
+    private static String getOrComputeNewFilename(FilenameParts filenameParts, NamingTemplate namingTemplate) {
+        if (
+            NEW_FILENAME_CACHE == null ||
+            namingTemplate.dependsOnDate() ||
+            filenameParts.getFilename().length() > MAX_CACHED_FILENAME_LENGTH
+        ) {
+            return computeNewFilename(filenameParts, namingTemplate);
         }
 
-        String filenameBeforeLastNumber = filenameWithoutExtensions.substring(0, lastNumberPatternMatcher.start(1));
-        String filenameAfterLastNumber = filenameWithoutExtensions.substring(lastNumberPatternMatcher.end(1));
+        return NEW_FILENAME_CACHE.get(
+            new CacheKey(namingTemplate, filenameParts.getFilename()),
+            cacheKey -> computeNewFilename(filenameParts, namingTemplate)
+        );
+    }
+
+    private static String computeNewFilename(FilenameParts filenameParts, NamingTemplate namingTemplate) {
+        FILENAME_COMPUTATIONS.increment();
+
+        return namingTemplate.isDefault()
+            ? incrementLastNumber(filenameParts, false)
+            : namingTemplate.apply(filenameParts);
+    }
+
+    /**
+     * Returns the index of the first dot that starts a file extension, or the length of the filename if it has no
+     * extension. A dot at the very start of the filename (dotfiles) does not start an extension.
+     */
+    private static int findExtensionsStart(String filename) {
+        int dotIndex = filename.indexOf('.', 1);
+
+        return dotIndex < 0 ? filename.length() : dotIndex;
+    }
+
+    static String incrementLastNumberInFilename(String filenameWithoutExtensions) {
+        int lastDigitIndex = filenameWithoutExtensions.length() - 1;
+
+        while (lastDigitIndex >= 0 && !isDigit(filenameWithoutExtensions.charAt(lastDigitIndex))) lastDigitIndex--;
 
-        return filenameBeforeLastNumber + lastNumberIncrementedString + filenameAfterLastNumber;
+        return incrementNumber(filenameWithoutExtensions, filenameWithoutExtensions.length(), lastDigitIndex, true);
     }
 
-    @Nullable private static Number incrementNumber(Number number) {
-        return switch (number) {
-            case Integer i -> (int) number + 1;
-            case Long l -> (long) number + 1;
-            case BigInteger bigInteger -> bigInteger.add(BigInteger.ONE);
-            default -> null;
-        };
+    /**
+     * Increments the last number of the name without extensions and drops the extensions.
+     */
+    private static String incrementLastNumber(FilenameParts filenameParts, boolean printMessages) {
+        return incrementNumber(
+            filenameParts.getFilename(),
+            filenameParts.getExtensionsStart(),
+            filenameParts.hasNumber() ? filenameParts.getNumberEnd() - 1 : -1,
+            printMessages
+        );
     }
 
-    @Nullable private static Number parseNumber(String number) {
-        try {
-            return Integer.parseInt(number);
-        } catch (NumberFormatException integerFormatException) {
-            try {
-                return Long.parseLong(number);
-            } catch (NumberFormatException longFormatException) {
-                try {
-                    return new BigInteger(number);
-                } catch (NumberFormatException bigIntegerFormatException) {
-                    return null;
-                }
-            }
+    /**
+     * Increments the number that ends at {@code lastDigitIndex} in {@code filename[0, end)} and drops everything from
+     * {@code end} onwards.
+     * <p>
+     * The digits are incremented in place with carry, so numbers of any length are supported and the width of the
+     * number (including its leading zeros) only grows when all of its digits were nines.
+     *
+     * @param lastDigitIndex the index of the last digit of the number, or -1 if there is no number
+     */
+    private static String incrementNumber(String filename, int end, int lastDigitIndex, boolean printMessages) {
+        if (lastDigitIndex < 0) {
+            if (printMessages) printNoNumberFoundMessage();
+            return filename.substring(0, end) + " (1)";
         }
+
+        char[] newFilename = new char[end + 1];
+        filename.getChars(0, end, newFilename, 0);
+
+        int carryIndex = lastDigitIndex;
+
+        while (carryIndex >= 0 && newFilename[carryIndex] == '9') newFilename[carryIndex--] = '0';
+
+        if (carryIndex >= 0 && isDigit(newFilename[carryIndex])) {
+            newFilename[carryIndex]++;
+            return new String(newFilename, 0, end);
+        }
+
+        /* All digits were nines: the number grows by one digit */
+        int firstDigitIndex = carryIndex + 1;
+        System.arraycopy(newFilename, firstDigitIndex, newFilename, firstDigitIndex + 1, end - firstDigitIndex);
+        newFilename[firstDigitIndex] = '1';
+
+        return new String(newFilename);
+    }
+
+    private static void printNoNumberFoundMessage() {
+        System.out.println(
+            "No number was found in the filename" +
+            System.lineSeparator() +
+            "Added \" (1)\" to the filename" +
+            System.lineSeparator()
+        );
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
     }
 
     static String removeFileExtension(String filename, boolean removeAllExtensions) {
-        if (!filename.contains(".")) return filename;
+        int dotIndex = removeAllExtensions ? filename.indexOf('.', 1) : filename.lastIndexOf('.');
 
-        String extensionPattern = "(?<!^)[.]" + (removeAllExtensions ? ".*" : "[^.]*$");
+        if (dotIndex < 1) return filename;
 
-        return filename.replaceAll(extensionPattern, "");
+        return filename.substring(0, dotIndex);
     }
 
     static String removeFileExtensions(String filename) {
-        if (!filename.contains(".")) return filename;
-
-        return removeFileExtension(filename, true);
+        return filename.substring(0, findExtensionsStart(filename));
     }
+
+    /**
+     * Naming templates are compiled once per template, so they are compared by identity
+     */
+    private record CacheKey(NamingTemplate namingTemplate, String filename) {}
 }
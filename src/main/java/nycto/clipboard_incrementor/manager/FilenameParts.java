@@ -0,0 +1,189 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A filename split into its parts by a single pass over the name: the prefix, the last number and the suffix of the
+ * name without extensions, followed by the extensions. {@code scan_0042_final.tar.gz} has the prefix {@code scan_}, the
+ * number {@code 0042} with two leading zeros, the suffix {@code _final} and the extensions {@code tar} and {@code gz}.
+ * <p>
+ * All parts are offsets into the original filename, so substrings are only created when they are asked for.
+ */
+public final class FilenameParts {
+
+    private static final int[] NO_EXTENSIONS = new int[0];
+
+    private final String filename;
+    private final int numberStart;
+    private final int numberEnd;
+    private final int significantDigitsStart;
+
+    /**
+     * Index of the dot in front of every extension, in order
+     */
+    private final int[] extensionDotIndexes;
+
+    private FilenameParts(
+        String filename,
+        int numberStart,
+        int numberEnd,
+        int significantDigitsStart,
+        int[] extensionDotIndexes
+    ) {
+        this.filename = filename;
+        this.numberStart = numberStart;
+        this.numberEnd = numberEnd;
+        this.significantDigitsStart = significantDigitsStart;
+        this.extensionDotIndexes = extensionDotIndexes;
+    }
+
+    /**
+     * Splits a filename into its parts. A dot at the very start of the filename (dotfiles) does not start an extension.
+     */
+    public static FilenameParts parse(String filename) {
+        int length = filename.length();
+        int numberStart = -1;
+        int numberEnd = -1;
+        int significantDigitsStart = -1;
+        int index = 0;
+
+        for (; index < length; index++) {
+            char character = filename.charAt(index);
+
+            if (character == '.' && index > 0) break;
+
+            if (character < '0' || character > '9') continue;
+
+            if (numberEnd != index) {
+                numberStart = index;
+                significantDigitsStart = index;
+            }
+
+            /* Leading zeros do not count towards the size of the number, but a lone zero does */
+            if (significantDigitsStart == index && character == '0') significantDigitsStart++;
+
+            numberEnd = index + 1;
+        }
+
+        if (numberStart >= 0 && significantDigitsStart == numberEnd) significantDigitsStart--;
+
+        int[] extensionDotIndexes = NO_EXTENSIONS;
+
+        if (index < length) {
+            extensionDotIndexes = new int[] { index };
+
+            while ((index = filename.indexOf('.', index + 1)) >= 0) {
+                extensionDotIndexes = Arrays.copyOf(extensionDotIndexes, extensionDotIndexes.length + 1);
+                extensionDotIndexes[extensionDotIndexes.length - 1] = index;
+            }
+        }
+
+        return new FilenameParts(filename, numberStart, numberEnd, significantDigitsStart, extensionDotIndexes);
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Returns the index of the dot that starts the extensions, or the length of the filename if it has no extension.
+     */
+    public int getExtensionsStart() {
+        return extensionDotIndexes.length == 0 ? filename.length() : extensionDotIndexes[0];
+    }
+
+    public String getNameWithoutExtensions() {
+        return filename.substring(0, getExtensionsStart());
+    }
+
+    public boolean hasNumber() {
+        return numberStart >= 0;
+    }
+
+    /**
+     * Returns the index of the first digit of the last number of the name without extensions, or -1 if it has no
+     * number.
+     */
+    public int getNumberStart() {
+        return numberStart;
+    }
+
+    /**
+     * Returns the index after the last digit of the last number of the name without extensions, or -1 if it has no
+     * number.
+     */
+    public int getNumberEnd() {
+        return numberEnd;
+    }
+
+    public int getDigitCount() {
+        return numberEnd - numberStart;
+    }
+
+    /**
+     * Counts the zeros at the start of the number. A number that consists of zeros only keeps its last zero, so
+     * {@code 000} has two leading zeros and {@code 0} none.
+     */
+    public int getLeadingZeroCount() {
+        return significantDigitsStart - numberStart;
+    }
+
+    /**
+     * Returns the digits of the number without its leading zeros.
+     */
+    public int getSignificantDigitCount() {
+        return numberEnd - significantDigitsStart;
+    }
+
+    /**
+     * Returns the number, which has to fit in a long.
+     */
+    public long getNumber() {
+        return Long.parseLong(filename, significantDigitsStart, numberEnd, 10);
+    }
+
+    public String getPrefix() {
+        return hasNumber() ? filename.substring(0, numberStart) : getNameWithoutExtensions();
+    }
+
+    public String getSuffix() {
+        return hasNumber() ? filename.substring(numberEnd, getExtensionsStart()) : "";
+    }
+
+    public List<String> getExtensions() {
+        List<String> extensions = new ArrayList<>(extensionDotIndexes.length);
+
+        for (int i = 0; i < extensionDotIndexes.length; i++) {
+            int end = i + 1 < extensionDotIndexes.length ? extensionDotIndexes[i + 1] : filename.length();
+            extensions.add(filename.substring(extensionDotIndexes[i] + 1, end));
+        }
+
+        return extensions;
+    }
+
+    @Override
+    public String toString() {
+        return filename;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static nycto.clipboard_incrementor.manager.FilenameManager.computeNewFilename;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An endless sequence of the filenames that follow a filename, as if {@link FilenameManager#createNewFilename(String)}
+ * was applied again and again.
+ * <p>
+ * The filename is only parsed once. After that, every step increments the digits of the number in a reused buffer
+ * with carry, so apart from the returned string a step does not allocate. The buffer only grows when all digits of the
+ * number were nines.
+ */
+public final class FilenameSequence implements Iterator<String> {
+
+    private char[] buffer;
+    private int length;
+
+    /**
+     * Index of the last digit of the number that is incremented
+     */
+    private int lastDigitIndex;
+
+    /**
+     * Creates the sequence of filenames that follow the given filename, starting with its new filename.
+     */
+    public FilenameSequence(String filename) {
+        String firstFilename = computeNewFilename(filename);
+        int digitIndex = firstFilename.length() - 1;
+
+        /* The new filename always contains a number, it was either incremented or added */
+        while (!isDigit(firstFilename.charAt(digitIndex))) digitIndex--;
+
+        lastDigitIndex = digitIndex;
+        length = firstFilename.length();
+        buffer = Arrays.copyOf(firstFilename.toCharArray(), length + 1);
+    }
+
+    /**
+     * Returns a lazy stream of the filenames that follow the given filename. The stream is endless, limit it with
+     * {@link Stream#limit(long)}.
+     */
+    public static Stream<String> stream(String filename) {
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                new FilenameSequence(filename),
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE
+            ),
+            false
+        );
+    }
+
+    @Override
+    public boolean hasNext() {
+        return true;
+    }
+
+    @Override
+    public String next() {
+        String filename = new String(buffer, 0, length);
+        increment();
+
+        return filename;
+    }
+
+    private void increment() {
+        int carryIndex = lastDigitIndex;
+
+        while (carryIndex >= 0 && buffer[carryIndex] == '9') buffer[carryIndex--] = '0';
+
+        if (carryIndex >= 0 && isDigit(buffer[carryIndex])) {
+            buffer[carryIndex]++;
+            return;
+        }
+
+        /* All digits were nines: the number grows by one digit */
+        if (length == buffer.length) buffer = Arrays.copyOf(buffer, length * 2);
+
+        int firstDigitIndex = carryIndex + 1;
+        System.arraycopy(buffer, firstDigitIndex, buffer, firstDigitIndex + 1, length - firstDigitIndex);
+        buffer[firstDigitIndex] = '1';
+        length++;
+        lastDigitIndex++;
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+}
@@ -0,0 +1,380 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static nycto.clipboard_incrementor.manager.ConfigManager.getString;
+
+import java.math.BigInteger;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Rules for creating the new filename: which number is incremented, by how much and how it is formatted.
+ * <p>
+ * A template is a list of {@code key=value} settings separated by {@code ;}, for example
+ * {@code number=first;step=10} or {@code pattern=IMG_(\d{8})_(\d+);group=2;date-group=1;date-format=yyyyMMdd}:
+ * <ul>
+ *     <li>{@code number}: {@code last} (default), {@code first} or the position of the number, counted from 1</li>
+ *     <li>{@code pattern}: a regular expression that finds the number instead, in the filename without extensions</li>
+ *     <li>{@code group}: the capture group of the pattern that holds the number, 1 by default</li>
+ *     <li>{@code step}: added to the number, 1 by default</li>
+ *     <li>{@code width}: minimum number of digits, padded with zeros. By default the number keeps its width</li>
+ *     <li>{@code fallback}: appended when there is no number, {@code " (1)"} by default</li>
+ *     <li>{@code date-group} and {@code date-format}: a capture group of the pattern that holds a date, which is
+ *     replaced by the date of today. When the date changes, the number restarts at 1</li>
+ * </ul>
+ * Templates are compiled once into a pattern and the settings above, and compiled templates are shared between
+ * directories that use the same template.
+ */
+public final class NamingTemplate {
+
+    /**
+     * Position of the number when the last number is used
+     */
+    private static final int LAST_NUMBER = 0;
+
+    public static final NamingTemplate DEFAULT = new NamingTemplate(null, 1, LAST_NUMBER, 1, 0, " (1)", 0, null);
+
+    private static final Map<String, NamingTemplate> COMPILED_TEMPLATES = new ConcurrentHashMap<>();
+
+    @Nullable private final Pattern pattern;
+    private final int group;
+    private final int numberPosition;
+    private final long step;
+    private final int width;
+    private final String fallback;
+    private final int dateGroup;
+
+    @Nullable private final DateTimeFormatter dateFormatter;
+
+    private NamingTemplate(
+        @Nullable Pattern pattern,
+        int group,
+        int numberPosition,
+        long step,
+        int width,
+        String fallback,
+        int dateGroup,
+        @Nullable DateTimeFormatter dateFormatter
+    ) {
+        this.pattern = pattern;
+        this.group = group;
+        this.numberPosition = numberPosition;
+        this.step = step;
+        this.width = width;
+        this.fallback = fallback;
+        this.dateGroup = dateGroup;
+        this.dateFormatter = dateFormatter;
+    }
+
+    /**
+     * Compiles a template, or returns the compiled template if the same template was compiled before. An empty
+     * template is the {@link #DEFAULT} template.
+     *
+     * @throws IllegalArgumentException if the template is invalid
+     */
+    public static NamingTemplate compile(String template) throws IllegalArgumentException {
+        if (template.isBlank()) return DEFAULT;
+
+        return COMPILED_TEMPLATES.computeIfAbsent(template, NamingTemplate::parse);
+    }
+
+    /**
+     * Returns the template of the directory, or of the {@code naming.template} setting if the directory has no template
+     * of its own. Templates of directories are numbered settings, so the directory path does not have to be escaped in
+     * the key:
+     * <pre>
+     * naming.template.1.directory=C:\\Users\\me\\Scans
+     * naming.template.1.rule=pattern=IMG_(\\d{8})_(\\d+);group=2
+     * </pre>
+     * Numbering starts at 1 and stops at the first number without a directory. Like every backslash in the config
+     * file, the backslashes of paths and patterns are written twice.
+     */
+    public static NamingTemplate forDirectory(Path directoryPath) {
+        String template = getDirectoryTemplate(directoryPath.toAbsolutePath().normalize());
+
+        try {
+            return compile(template);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            System.err.println(
+                "Invalid naming template for directory " +
+                directoryPath +
+                " (" +
+                illegalArgumentException.getMessage() +
+                "), using the default template"
+            );
+
+            return DEFAULT;
+        }
+    }
+
+    private static String getDirectoryTemplate(Path directoryPath) {
+        String directory;
+
+        for (int i = 1; !(directory = getString("naming.template." + i + ".directory", "")).isEmpty(); i++) {
+            try {
+                if (Path.of(directory).toAbsolutePath().normalize().equals(directoryPath)) {
+                    return getString("naming.template." + i + ".rule", "");
+                }
+            } catch (InvalidPathException invalidPathException) {
+                System.err.println("Invalid directory for naming template " + i + ": " + directory);
+            }
+        }
+
+        return getString("naming.template", "");
+    }
+
+    private static NamingTemplate parse(String template) {
+        @Nullable Pattern pattern = null;
+        int group = 1;
+        int numberPosition = LAST_NUMBER;
+        long step = 1;
+        int width = 0;
+        String fallback = " (1)";
+        int dateGroup = 0;
+        @Nullable DateTimeFormatter dateFormatter = null;
+
+        for (String setting : template.split(";")) {
+            if (setting.isBlank()) continue;
+
+            int separatorIndex = setting.indexOf('=');
+
+            if (separatorIndex < 0) throw new IllegalArgumentException("Setting has no value: " + setting.trim());
+
+            String key = setting.substring(0, separatorIndex).trim().toLowerCase(Locale.ROOT);
+            String value = setting.substring(separatorIndex + 1);
+
+            switch (key) {
+                case "pattern" -> {
+                    try {
+                        pattern = Pattern.compile(value);
+                    } catch (PatternSyntaxException patternSyntaxException) {
+                        throw new IllegalArgumentException("Invalid pattern: " + value, patternSyntaxException);
+                    }
+                }
+                case "group" -> group = parsePositiveInt(key, value);
+                case "number" -> numberPosition = switch (value.trim().toLowerCase(Locale.ROOT)) {
+                    case "last" -> LAST_NUMBER;
+                    case "first" -> 1;
+                    default -> parsePositiveInt(key, value);
+                };
+                case "step" -> step = parsePositiveInt(key, value);
+                case "width" -> width = parsePositiveInt(key, value);
+                case "fallback" -> fallback = value;
+                case "date-group" -> dateGroup = parsePositiveInt(key, value);
+                case "date-format" -> {
+                    try {
+                        dateFormatter = DateTimeFormatter.ofPattern(value.trim(), Locale.ROOT);
+                    } catch (IllegalArgumentException illegalArgumentException) {
+                        throw new IllegalArgumentException("Invalid date format: " + value, illegalArgumentException);
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown setting: " + key);
+            }
+        }
+
+        if (pattern != null && group > pattern.matcher("").groupCount()) {
+            throw new IllegalArgumentException("Pattern has no group " + group);
+        }
+
+        if (dateGroup > 0) {
+            if (pattern == null || dateFormatter == null) {
+                throw new IllegalArgumentException("A date group needs a pattern and a date format");
+            }
+
+            if (dateGroup == group || dateGroup > pattern.matcher("").groupCount()) {
+                throw new IllegalArgumentException("Pattern has no separate date group " + dateGroup);
+            }
+        }
+
+        return new NamingTemplate(pattern, group, numberPosition, step, width, fallback, dateGroup, dateFormatter);
+    }
+
+    private static int parsePositiveInt(String key, String value) {
+        try {
+            int number = Integer.parseInt(value.trim());
+
+            if (number > 0) return number;
+        } catch (NumberFormatException numberFormatException) {
+            /* Reported below */
+        }
+
+        throw new IllegalArgumentException("Setting " + key + " must be a positive number: " + value.trim());
+    }
+
+    public boolean isDefault() {
+        return this == DEFAULT;
+    }
+
+    /**
+     * Whether the new filename depends on the date of today, besides the filename itself.
+     */
+    public boolean dependsOnDate() {
+        return dateGroup > 0;
+    }
+
+    /**
+     * Whether the template increments the last number by one, so the numbers in use can be skipped with a
+     * {@link SequenceIndex}.
+     */
+    public boolean incrementsLastNumberByOne() {
+        return pattern == null && numberPosition == LAST_NUMBER && step == 1;
+    }
+
+    /**
+     * Creates the new filename, without extensions.
+     */
+    public String apply(FilenameParts filenameParts) {
+        return apply(filenameParts, LocalDate.now());
+    }
+
+    String apply(String filename, LocalDate today) {
+        return apply(FilenameParts.parse(filename), today);
+    }
+
+    String apply(FilenameParts filenameParts, LocalDate today) {
+        String name = filenameParts.getNameWithoutExtensions();
+        int numberStart;
+        int numberEnd;
+        int dateStart = -1;
+        int dateEnd = -1;
+
+        if (pattern != null) {
+            Matcher matcher = pattern.matcher(name);
+
+            if (!matcher.find() || !isDigits(name, matcher.start(group), matcher.end(group))) return name + fallback;
+
+            numberStart = matcher.start(group);
+            numberEnd = matcher.end(group);
+
+            if (dateGroup > 0 && matcher.start(dateGroup) >= 0) {
+                dateStart = matcher.start(dateGroup);
+                dateEnd = matcher.end(dateGroup);
+            }
+        } else if (numberPosition == LAST_NUMBER) {
+            if (!filenameParts.hasNumber()) return name + fallback;
+
+            numberStart = filenameParts.getNumberStart();
+            numberEnd = filenameParts.getNumberEnd();
+        } else {
+            long numberSpan = findNumber(name);
+
+            if (numberSpan < 0) return name + fallback;
+
+            numberStart = (int) (numberSpan >>> 32);
+            numberEnd = (int) numberSpan;
+        }
+
+        String digits = name.substring(numberStart, numberEnd);
+        String newNumber = formatNumber(increment(digits), digits.length());
+
+        if (dateStart < 0 || dateFormatter == null || (dateStart < numberEnd && numberStart < dateEnd)) {
+            return name.substring(0, numberStart) + newNumber + name.substring(numberEnd);
+        }
+
+        String date = today.format(dateFormatter);
+
+        /* A new day starts a new sequence */
+        if (!name.regionMatches(dateStart, date, 0, date.length()) || dateEnd - dateStart != date.length()) {
+            newNumber = formatNumber("1", digits.length());
+        }
+
+        StringBuilder newName = new StringBuilder(name);
+
+        /* Replace the span at the end first, so the start of the other span does not move */
+        if (dateStart > numberStart) newName.replace(dateStart, dateEnd, date);
+
+        newName.replace(numberStart, numberEnd, newNumber);
+
+        if (dateStart < numberStart) newName.replace(dateStart, dateEnd, date);
+
+        return newName.toString();
+    }
+
+    /**
+     * Finds the number at the position of the template.
+     *
+     * @return the start of the number in the upper and its end in the lower 32 bits, or -1 if there is no such number
+     */
+    private long findNumber(String name) {
+        int position = 0;
+        int index = 0;
+        int length = name.length();
+
+        while (index < length) {
+            if (!isDigit(name.charAt(index))) {
+                index++;
+                continue;
+            }
+
+            int start = index;
+
+            while (index < length && isDigit(name.charAt(index))) index++;
+
+            if (++position == numberPosition) return ((long) start << 32) | index;
+        }
+
+        return -1;
+    }
+
+    private String increment(String digits) {
+        if (digits.length() <= 18) {
+            try {
+                return Long.toString(Math.addExact(Long.parseLong(digits), step));
+            } catch (ArithmeticException arithmeticException) {
+                /* Continue with a big integer */
+            }
+        }
+
+        return new BigInteger(digits).add(BigInteger.valueOf(step)).toString();
+    }
+
+    /**
+     * Pads the number with zeros to the width of the template, or to the width of the old number by default.
+     */
+    private String formatNumber(String number, int oldWidth) {
+        int minimumWidth = width > 0 ? width : oldWidth;
+
+        return number.length() >= minimumWidth ? number : "0".repeat(minimumWidth - number.length()) + number;
+    }
+
+    private static boolean isDigits(String string, int start, int end) {
+        if (start < 0 || start == end) return false;
+
+        for (int i = start; i < end; i++) {
+            if (!isDigit(string.charAt(i))) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean isDigit(char character) {
+        return character >= '0' && character <= '9';
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The numbers that are in use in the filenames of a directory, per stem: the part of the filename (without extensions)
+ * before and after its last number. Files {@code scan_0041.png} and {@code scan_0042.jpg} both have the stem
+ * {@code scan_} with numbers 41 and 42.
+ * <p>
+ * The numbers of a stem are stored as ranges of consecutive numbers in a tree map, so a directory with a million
+ * consecutively numbered files needs a single entry, and the next free number is found in O(log n) without touching
+ * the file system.
+ */
+public final class SequenceIndex {
+
+    /**
+     * Numbers with more digits do not fit in a long and are not indexed
+     */
+    private static final int MAX_DIGIT_COUNT = 18;
+
+    /**
+     * Start of every range of numbers in use, mapped to the end of the range (inclusive), per stem
+     */
+    private final Map<String, NavigableMap<Long, Long>> rangesByStem = new HashMap<>();
+
+    /**
+     * How many more files use a number of a stem, for numbers used by more than one file (different extensions)
+     */
+    private final Map<String, Integer> duplicateCounts = new HashMap<>();
+
+    public void add(String filename) {
+        add(FilenameParts.parse(filename));
+    }
+
+    public synchronized void add(FilenameParts filenameParts) {
+        @Nullable String stem = getStem(filenameParts);
+
+        if (stem == null) return;
+
+        NavigableMap<Long, Long> ranges = rangesByStem.computeIfAbsent(stem, key -> new TreeMap<>());
+        long number = filenameParts.getNumber();
+        Map.@Nullable Entry<Long, Long> floorRange = ranges.floorEntry(number);
+
+        if (floorRange != null && floorRange.getValue() >= number) {
+            duplicateCounts.merge(stem + '\0' + number, 1, Integer::sum);
+            return;
+        }
+
+        long start = number;
+        long end = number;
+
+        if (floorRange != null && floorRange.getValue() == number - 1) {
+            start = floorRange.getKey();
+        }
+
+        @Nullable Long nextRangeEnd = number == Long.MAX_VALUE ? null : ranges.remove(number + 1);
+
+        if (nextRangeEnd != null) end = nextRangeEnd;
+
+        ranges.put(start, end);
+    }
+
+    public void remove(String filename) {
+        remove(FilenameParts.parse(filename));
+    }
+
+    public synchronized void remove(FilenameParts filenameParts) {
+        @Nullable String stem = getStem(filenameParts);
+
+        if (stem == null) return;
+
+        @Nullable NavigableMap<Long, Long> ranges = rangesByStem.get(stem);
+
+        if (ranges == null) return;
+
+        long number = filenameParts.getNumber();
+        Map.@Nullable Entry<Long, Long> floorRange = ranges.floorEntry(number);
+
+        if (floorRange == null || floorRange.getValue() < number) return;
+
+        String duplicateKey = stem + '\0' + number;
+
+        if (duplicateCounts.containsKey(duplicateKey)) {
+            duplicateCounts.computeIfPresent(duplicateKey, (key, count) -> count == 1 ? null : count - 1);
+            return;
+        }
+
+        ranges.remove(floorRange.getKey());
+
+        if (floorRange.getKey() < number) ranges.put(floorRange.getKey(), number - 1);
+        if (floorRange.getValue() > number) ranges.put(number + 1, floorRange.getValue());
+        if (ranges.isEmpty()) rangesByStem.remove(stem);
+    }
+
+    /**
+     * Returns the new filename itself if its number is not in use yet, otherwise the same filename with the first
+     * number after it that is not in use. The number keeps its width, including leading zeros.
+     *
+     * @param newFilename a new filename as created by {@link FilenameManager#createNewFilename(String)}
+     */
+    public String findFreeFilename(String newFilename) {
+        return findFreeFilename(FilenameParts.parse(newFilename));
+    }
+
+    /**
+     * Returns the new filename itself if its number is not in use yet, otherwise the same filename with the first
+     * number after it that is not in use.
+     */
+    public synchronized String findFreeFilename(FilenameParts newFilenameParts) {
+        String newFilename = newFilenameParts.getFilename();
+        @Nullable String stem = getStem(newFilenameParts);
+
+        if (stem == null) return newFilename;
+
+        @Nullable NavigableMap<Long, Long> ranges = rangesByStem.get(stem);
+
+        if (ranges == null) return newFilename;
+
+        long number = newFilenameParts.getNumber();
+        Map.@Nullable Entry<Long, Long> floorRange = ranges.floorEntry(number);
+
+        if (floorRange == null || floorRange.getValue() < number) return newFilename;
+        if (floorRange.getValue() == Long.MAX_VALUE) return newFilename;
+
+        String digits = Long.toString(floorRange.getValue() + 1);
+
+        return (
+            newFilename.substring(0, newFilenameParts.getNumberStart()) +
+            "0".repeat(Math.max(0, newFilenameParts.getDigitCount() - digits.length())) +
+            digits +
+            newFilename.substring(newFilenameParts.getNumberEnd())
+        );
+    }
+
+    /**
+     * Returns the part of the name without extensions before and after its last number, or {@code null} if it has no
+     * number that can be indexed.
+     */
+    @Nullable private static String getStem(FilenameParts filenameParts) {
+        if (!filenameParts.hasNumber() || filenameParts.getSignificantDigitCount() > MAX_DIGIT_COUNT) return null;
+
+        /* File names cannot contain a NUL character, so it separates the parts of the stem unambiguously */
+        return filenameParts.getPrefix() + '\0' + filenameParts.getSuffix();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for setting the clipboard text through a clipboard backend.
+ */
+@Name("nycto.clipboard_incrementor.ClipboardWrite")
+@Label("Clipboard Write")
+@Category("Clipboard Incrementor")
+public final class ClipboardWriteEvent extends Event {
+
+    @Label("Text")
+    public String text;
+
+    @Label("Backend")
+    public String backend;
+
+    @Label("Skipped")
+    @Description("Whether the clipboard already held the text")
+    public boolean skipped;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
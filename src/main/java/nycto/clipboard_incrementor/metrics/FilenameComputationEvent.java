@@ -0,0 +1,37 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for computing the incremented filename of a created file.
+ */
+@Name("nycto.clipboard_incrementor.FilenameComputation")
+@Label("Filename Computation")
+@Category("Clipboard Incrementor")
+public final class FilenameComputationEvent extends Event {
+
+    @Label("Filename")
+    public String filename;
+
+    @Label("New Filename")
+    public String newFilename;
+}
@@ -0,0 +1,96 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations with one bucket per power of two nanoseconds. Recording a duration only increments
+ * striped counters, so it never blocks and scales with the number of recording threads. Percentiles are accurate
+ * within a factor of two, which is enough to tell milliseconds from seconds.
+ */
+public final class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) buckets[i] = new LongAdder();
+    }
+
+    public void record(long durationNanos) {
+        if (durationNanos < 0) durationNanos = 0;
+
+        buckets[Long.SIZE - Long.numberOfLeadingZeros(durationNanos)].increment();
+        count.increment();
+        totalNanos.add(durationNanos);
+        maxNanos.accumulate(durationNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanMicros() {
+        long currentCount = count.sum();
+
+        return currentCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / currentCount);
+    }
+
+    public long getMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxNanos.get());
+    }
+
+    /**
+     * Returns the upper bound of the bucket that contains the given percentile, capped at the maximum duration.
+     *
+     * @param percentile a percentile between 0 and 100
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] bucketCounts = new long[buckets.length];
+        long currentCount = 0;
+
+        for (int i = 0; i < buckets.length; i++) {
+            bucketCounts[i] = buckets[i].sum();
+            currentCount += bucketCounts[i];
+        }
+
+        if (currentCount == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(currentCount * percentile / 100));
+        long cumulativeCount = 0;
+
+        for (int i = 0; i < bucketCounts.length; i++) {
+            cumulativeCount += bucketCounts[i];
+
+            if (cumulativeCount >= rank) {
+                long upperBoundNanos = i == 0 ? 0 : i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+
+                return TimeUnit.NANOSECONDS.toMicros(Math.min(upperBoundNanos, maxNanos.get()));
+            }
+        }
+
+        return getMaxMicros();
+    }
+}
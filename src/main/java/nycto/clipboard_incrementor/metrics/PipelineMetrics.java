@@ -0,0 +1,205 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Counters and latencies of the pipeline from watch event to clipboard. All counters are striped, so recording from
+ * the watcher and clipboard writer threads never takes a lock.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+
+    public static final String OBJECT_NAME = "nycto.clipboard_incrementor:type=PipelineMetrics";
+
+    public static final LongAdder EVENTS_RECEIVED = new LongAdder();
+    public static final LongAdder EVENTS_FILTERED = new LongAdder();
+    public static final LongAdder DUPLICATES_SUPPRESSED = new LongAdder();
+    public static final LongAdder FILENAME_COMPUTATIONS = new LongAdder();
+    public static final LongAdder FILENAME_CACHE_HITS = new LongAdder();
+    public static final LongAdder FILENAME_CACHE_MISSES = new LongAdder();
+    public static final LongAdder CLIPBOARD_WRITES = new LongAdder();
+    public static final LongAdder CLIPBOARD_FAILURES = new LongAdder();
+    public static final LongAdder EVENT_BATCHES_DROPPED = new LongAdder();
+    public static final LongAdder EVENT_BATCHES_COALESCED = new LongAdder();
+
+    /**
+     * Watch event batches that wait in the event queues to be processed
+     */
+    public static final LongAdder EVENT_QUEUE_DEPTH = new LongAdder();
+
+    /**
+     * Time from receiving the watch event of a file until its incremented filename is on the clipboard
+     */
+    public static final LatencyHistogram EVENT_TO_CLIPBOARD_LATENCY = new LatencyHistogram();
+
+    private PipelineMetrics() {}
+
+    /**
+     * Returns whether Flight Recorder is initialized, which it is from the first recording on. The pipeline events are
+     * only created then: initializing the first event class initializes Flight Recorder, which would delay handling
+     * the first created file by hundreds of milliseconds.
+     */
+    public static boolean isFlightRecorderInitialized() {
+        return FlightRecorder.isInitialized();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, unless they are already registered.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+
+            if (!mBeanServer.isRegistered(objectName)) mBeanServer.registerMBean(new PipelineMetrics(), objectName);
+        } catch (JMException | SecurityException exception) {
+            System.err.println("Could not register metrics MBean: " + exception.getMessage());
+        }
+    }
+
+    public static void printStats() {
+        System.out.println(formatStats());
+    }
+
+    public static String formatStats() {
+        PipelineMetrics metrics = new PipelineMetrics();
+
+        return String.join(
+            System.lineSeparator(),
+            "Events received: " + metrics.getEventsReceived(),
+            "Events filtered: " + metrics.getEventsFiltered(),
+            "Duplicates suppressed: " + metrics.getDuplicatesSuppressed(),
+            "Filename computations: " + metrics.getFilenameComputations(),
+            "Filename cache: " +
+            metrics.getFilenameCacheHits() +
+            " hits, " +
+            metrics.getFilenameCacheMisses() +
+            " misses",
+            "Clipboard writes: " + metrics.getClipboardWrites(),
+            "Clipboard failures: " + metrics.getClipboardFailures(),
+            "Event queue: " +
+            metrics.getEventQueueDepth() +
+            " waiting, " +
+            metrics.getEventBatchesDropped() +
+            " dropped, " +
+            metrics.getEventBatchesCoalesced() +
+            " coalesced",
+            "Event to clipboard: " +
+            metrics.getEventToClipboardCount() +
+            " measured, mean " +
+            formatMillis(metrics.getEventToClipboardMeanMicros()) +
+            ", p50 " +
+            formatMillis(metrics.getEventToClipboardP50Micros()) +
+            ", p99 " +
+            formatMillis(metrics.getEventToClipboardP99Micros()) +
+            ", max " +
+            formatMillis(metrics.getEventToClipboardMaxMicros())
+        );
+    }
+
+    private static String formatMillis(long micros) {
+        return String.format(Locale.ROOT, "%.3f ms", micros / 1000.0);
+    }
+
+    @Override
+    public long getEventsReceived() {
+        return EVENTS_RECEIVED.sum();
+    }
+
+    @Override
+    public long getEventsFiltered() {
+        return EVENTS_FILTERED.sum();
+    }
+
+    @Override
+    public long getDuplicatesSuppressed() {
+        return DUPLICATES_SUPPRESSED.sum();
+    }
+
+    @Override
+    public long getFilenameComputations() {
+        return FILENAME_COMPUTATIONS.sum();
+    }
+
+    @Override
+    public long getFilenameCacheHits() {
+        return FILENAME_CACHE_HITS.sum();
+    }
+
+    @Override
+    public long getFilenameCacheMisses() {
+        return FILENAME_CACHE_MISSES.sum();
+    }
+
+    @Override
+    public long getClipboardWrites() {
+        return CLIPBOARD_WRITES.sum();
+    }
+
+    @Override
+    public long getClipboardFailures() {
+        return CLIPBOARD_FAILURES.sum();
+    }
+
+    @Override
+    public long getEventQueueDepth() {
+        return EVENT_QUEUE_DEPTH.sum();
+    }
+
+    @Override
+    public long getEventBatchesDropped() {
+        return EVENT_BATCHES_DROPPED.sum();
+    }
+
+    @Override
+    public long getEventBatchesCoalesced() {
+        return EVENT_BATCHES_COALESCED.sum();
+    }
+
+    @Override
+    public long getEventToClipboardCount() {
+        return EVENT_TO_CLIPBOARD_LATENCY.getCount();
+    }
+
+    @Override
+    public long getEventToClipboardMeanMicros() {
+        return EVENT_TO_CLIPBOARD_LATENCY.getMeanMicros();
+    }
+
+    @Override
+    public long getEventToClipboardP50Micros() {
+        return EVENT_TO_CLIPBOARD_LATENCY.getPercentileMicros(50);
+    }
+
+    @Override
+    public long getEventToClipboardP99Micros() {
+        return EVENT_TO_CLIPBOARD_LATENCY.getPercentileMicros(99);
+    }
+
+    @Override
+    public long getEventToClipboardMaxMicros() {
+        return EVENT_TO_CLIPBOARD_LATENCY.getMaxMicros();
+    }
+}
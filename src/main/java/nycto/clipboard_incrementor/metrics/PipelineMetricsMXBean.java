@@ -0,0 +1,57 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+/**
+ * Exposes the pipeline metrics through JMX, under {@value PipelineMetrics#OBJECT_NAME}.
+ */
+public interface PipelineMetricsMXBean {
+    long getEventsReceived();
+
+    long getEventsFiltered();
+
+    long getDuplicatesSuppressed();
+
+    long getFilenameComputations();
+
+    long getFilenameCacheHits();
+
+    long getFilenameCacheMisses();
+
+    long getClipboardWrites();
+
+    long getClipboardFailures();
+
+    long getEventQueueDepth();
+
+    long getEventBatchesDropped();
+
+    long getEventBatchesCoalesced();
+
+    long getEventToClipboardCount();
+
+    long getEventToClipboardMeanMicros();
+
+    long getEventToClipboardP50Micros();
+
+    long getEventToClipboardP99Micros();
+
+    long getEventToClipboardMaxMicros();
+}
@@ -0,0 +1,48 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event for handling one batch of watch events of a directory, from taking its watch key until the
+ * new filename is handed to the clipboard writer.
+ */
+@Name("nycto.clipboard_incrementor.WatchBatch")
+@Label("Watch Batch")
+@Category("Clipboard Incrementor")
+@Description("Handling of one batch of watch events of a directory")
+public final class WatchBatchEvent extends Event {
+
+    @Label("Directory")
+    public String directory;
+
+    @Label("Batch Size")
+    @Description("Number of watch events in the batch")
+    public int batchSize;
+
+    @Label("Created Files")
+    @Description("Number of created files in the batch, including recovered files and files of new subdirectories")
+    public int createdFileCount;
+
+    @Label("Overflow")
+    @Description("Whether events were lost and the directory was rescanned")
+    public boolean overflow;
+}
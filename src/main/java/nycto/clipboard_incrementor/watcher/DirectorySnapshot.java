@@ -0,0 +1,254 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
+import nycto.clipboard_incrementor.manager.SequenceIndex;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The names, and where known the modification times, of the entries of a watched directory. It is kept up to date
+ * from the create and delete events, which every watched directory registers, so after events were lost (an
+ * OVERFLOW event) a rescan only has to compare the listing of the directory against it.
+ * <p>
+ * A rescan only reads the attributes of entries that are not in the snapshot yet, and is skipped altogether when the
+ * directory was not modified since the previous listing.
+ * <p>
+ * A snapshot can be updated from the watch events and reconciled by a polling watch service at the same time, so
+ * its updates are synchronized.
+ */
+final class DirectorySnapshot {
+
+    /**
+     * Modification times of directories are only trusted if they are this much older than the listing, so file
+     * systems with a coarse timestamp granularity cannot hide entries that were created right after the listing
+     */
+    private static final long MODIFIED_TIME_GRANULARITY_MILLIS = 2000;
+
+    /**
+     * Modification time of entries that were added without reading their attributes
+     */
+    static final long UNKNOWN_MODIFIED_MILLIS = 0;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Kept up to date with the entries, or {@code null} if the numbers in use are not needed
+     */
+    @Nullable private final SequenceIndex sequenceIndex;
+
+    private volatile long directoryModifiedMillis = UNKNOWN_MODIFIED_MILLIS;
+    private volatile long listedMillis = UNKNOWN_MODIFIED_MILLIS;
+
+    /* Guarded by the snapshot */
+    private int generation;
+
+    DirectorySnapshot() {
+        this(null);
+    }
+
+    DirectorySnapshot(@Nullable SequenceIndex sequenceIndex) {
+        this.sequenceIndex = sequenceIndex;
+    }
+
+    synchronized void add(String name) {
+        @Nullable Entry previousEntry = entries.putIfAbsent(name, new Entry(UNKNOWN_MODIFIED_MILLIS, generation));
+
+        if (previousEntry == null && sequenceIndex != null) sequenceIndex.add(name);
+    }
+
+    synchronized void add(String name, long modifiedMillis) {
+        @Nullable Entry previousEntry = entries.put(name, new Entry(modifiedMillis, generation));
+
+        if (previousEntry == null && sequenceIndex != null) sequenceIndex.add(name);
+    }
+
+    boolean contains(String name) {
+        return entries.containsKey(name);
+    }
+
+    synchronized void remove(String name) {
+        @Nullable Entry removedEntry = entries.remove(name);
+
+        if (removedEntry != null && sequenceIndex != null) sequenceIndex.remove(name);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getDirectoryModifiedMillis() {
+        return directoryModifiedMillis;
+    }
+
+    long getListedMillis() {
+        return listedMillis;
+    }
+
+    void forEachEntry(ObjLongConsumer<String> action) {
+        entries.forEach((name, entry) -> action.accept(name, entry.modifiedMillis));
+    }
+
+    /**
+     * Fills the snapshot with the names of all entries of the directory, without reading their attributes.
+     */
+    void load(Path directoryPath) throws IOException {
+        long listedMillis = System.currentTimeMillis();
+        long directoryModifiedMillis = Files.getLastModifiedTime(directoryPath).toMillis();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directoryPath)) {
+            for (Path entryPath : directoryStream) {
+                add(entryPath.getFileName().toString());
+            }
+        } catch (DirectoryIteratorException directoryIteratorException) {
+            throw directoryIteratorException.getCause();
+        }
+
+        markListed(directoryModifiedMillis, listedMillis);
+    }
+
+    /**
+     * Records that the snapshot now contains the full listing of the directory.
+     */
+    void markListed(long directoryModifiedMillis, long listedMillis) {
+        this.directoryModifiedMillis = directoryModifiedMillis;
+        this.listedMillis = listedMillis;
+    }
+
+    private boolean isUnmodifiedSinceListing(long currentDirectoryModifiedMillis) {
+        return (
+            listedMillis != UNKNOWN_MODIFIED_MILLIS &&
+            currentDirectoryModifiedMillis == directoryModifiedMillis &&
+            listedMillis - currentDirectoryModifiedMillis > MODIFIED_TIME_GRANULARITY_MILLIS
+        );
+    }
+
+    /**
+     * Compares the directory against the snapshot and brings the snapshot up to date.
+     *
+     * @return the entries that are missing from the snapshot, from oldest to newest
+     */
+    List<Path> reconcile(Path directoryPath) throws IOException {
+        return reconcile(directoryPath, null);
+    }
+
+    /**
+     * Compares the directory against the snapshot and brings the snapshot up to date.
+     *
+     * @param deletedNames collects the names of the entries that no longer exist, or {@code null} if they are not
+     *                     needed
+     * @return the entries that are missing from the snapshot, from oldest to newest
+     */
+    synchronized List<Path> reconcile(Path directoryPath, @Nullable List<String> deletedNames) throws IOException {
+        long listedMillis = System.currentTimeMillis();
+        long currentDirectoryModifiedMillis = Files.getLastModifiedTime(directoryPath).toMillis();
+
+        if (isUnmodifiedSinceListing(currentDirectoryModifiedMillis)) return List.of();
+
+        int currentGeneration = ++generation;
+        List<Entry> newEntries = new ArrayList<>();
+        List<Path> newEntryPaths = new ArrayList<>();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directoryPath)) {
+            for (Path entryPath : directoryStream) {
+                String name = entryPath.getFileName().toString();
+                Entry entry = entries.get(name);
+
+                if (entry != null) {
+                    entry.generation = currentGeneration;
+                    continue;
+                }
+
+                long modifiedMillis;
+
+                try {
+                    modifiedMillis = Files.readAttributes(
+                        entryPath,
+                        BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS
+                    )
+                        .lastModifiedTime()
+                        .toMillis();
+                } catch (IOException ioException) {
+                    /* The entry was deleted in the meantime */
+                    continue;
+                }
+
+                entry = new Entry(modifiedMillis, currentGeneration);
+                entry.path = entryPath;
+                entries.put(name, entry);
+                newEntries.add(entry);
+
+                if (sequenceIndex != null) sequenceIndex.add(name);
+            }
+        } catch (DirectoryIteratorException directoryIteratorException) {
+            throw directoryIteratorException.getCause();
+        }
+
+        /* Entries that were not seen during this listing were deleted */
+        entries
+            .entrySet()
+            .removeIf(entry -> {
+                if (entry.getValue().generation == currentGeneration) return false;
+
+                if (deletedNames != null) deletedNames.add(entry.getKey());
+                if (sequenceIndex != null) sequenceIndex.remove(entry.getKey());
+
+                return true;
+            });
+
+        newEntries.sort(Comparator.comparingLong(entry -> entry.modifiedMillis));
+
+        for (Entry newEntry : newEntries) {
+            newEntryPaths.add(newEntry.path);
+            newEntry.path = null;
+        }
+
+        markListed(currentDirectoryModifiedMillis, listedMillis);
+
+        return newEntryPaths;
+    }
+
+    private static final class Entry {
+
+        private final long modifiedMillis;
+
+        /* Guarded by the snapshot */
+        private int generation;
+
+        /**
+         * Only set while reconciling, to avoid storing a path per entry
+         */
+        @Nullable private Path path;
+
+        private Entry(long modifiedMillis, int generation) {
+            this.modifiedMillis = modifiedMillis;
+            this.generation = generation;
+        }
+    }
+}
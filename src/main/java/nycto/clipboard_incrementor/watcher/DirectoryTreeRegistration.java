@@ -0,0 +1,104 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Registers all subdirectories of an already registered directory with the watch service. Every subdirectory is
+ * listed by its own fork/join task, so large trees are registered in parallel.
+ */
+final class DirectoryTreeRegistration extends RecursiveAction {
+
+    private final WatchService watchService;
+    private final WatchedDirectory watchedDirectory;
+
+    /**
+     * Collects the files that are found while walking, or {@code null} if they are not needed
+     */
+    @Nullable private final Queue<Path> filePaths;
+
+    private final AtomicInteger failedRegistrationCount;
+
+    DirectoryTreeRegistration(
+        WatchService watchService,
+        WatchedDirectory watchedDirectory,
+        @Nullable Queue<Path> filePaths,
+        AtomicInteger failedRegistrationCount
+    ) {
+        this.watchService = watchService;
+        this.watchedDirectory = watchedDirectory;
+        this.filePaths = filePaths;
+        this.failedRegistrationCount = failedRegistrationCount;
+    }
+
+    @Override
+    protected void compute() {
+        List<DirectoryTreeRegistration> subdirectoryRegistrations = new ArrayList<>();
+        DirectorySnapshot snapshot = watchedDirectory.getSnapshot();
+
+        try {
+            long listedMillis = System.currentTimeMillis();
+            long directoryModifiedMillis = Files.getLastModifiedTime(watchedDirectory.getPath()).toMillis();
+
+            listDirectory(snapshot, subdirectoryRegistrations);
+            snapshot.markListed(directoryModifiedMillis, listedMillis);
+        } catch (IOException | DirectoryIteratorException | SecurityException exception) {
+            /* The directory was deleted or became inaccessible while walking, its watch key is dropped on reset */
+        }
+
+        invokeAll(subdirectoryRegistrations);
+    }
+
+    private void listDirectory(DirectorySnapshot snapshot, List<DirectoryTreeRegistration> subdirectoryRegistrations)
+        throws IOException {
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(watchedDirectory.getPath())) {
+            for (Path entryPath : directoryStream) {
+                snapshot.add(entryPath.getFileName().toString());
+
+                if (!Files.isDirectory(entryPath, LinkOption.NOFOLLOW_LINKS)) {
+                    if (filePaths != null) filePaths.add(entryPath);
+                    continue;
+                }
+
+                try {
+                    WatchedDirectory subdirectory = DirectoryWatcher.registerDirectory(
+                        watchService,
+                        entryPath,
+                        watchedDirectory
+                    );
+
+                    subdirectoryRegistrations.add(
+                        new DirectoryTreeRegistration(watchService, subdirectory, filePaths, failedRegistrationCount)
+                    );
+                } catch (IOException | SecurityException exception) {
+                    failedRegistrationCount.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -20,78 +20,657 @@
 package nycto.clipboard_incrementor.watcher;
 
 import static nycto.clipboard_incrementor.Main.createDivider;
-import static nycto.clipboard_incrementor.manager.ClipboardManager.getClipboardText;
-import static nycto.clipboard_incrementor.manager.ClipboardManager.setClipboardText;
-import static nycto.clipboard_incrementor.manager.DirectoryManager.getWatchedDirectoryPath;
-import static nycto.clipboard_incrementor.manager.DirectoryManager.printCurrentDirectoryMessage;
+import static nycto.clipboard_incrementor.manager.ClipboardManager.setClipboardTextAsync;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getBoolean;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getLong;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getString;
 import static nycto.clipboard_incrementor.manager.FilenameManager.createNewFilename;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import nycto.clipboard_incrementor.manager.FilenameParts;
+import nycto.clipboard_incrementor.manager.NamingTemplate;
+import nycto.clipboard_incrementor.metrics.WatchBatchEvent;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Watches all registered directories with a single native watch service, so any number of directories is handled by
+ * one thread. Watch keys are routed back to their directory through a key-to-directory map.
+ * <p>
+ * Recursively watched directories register their whole subtree once, and keep it up to date from the events of the
+ * tree itself: new subdirectories are registered as they appear and deleted subtrees are unregistered.
+ * <p>
+ * Directories on file systems without change notifications are registered with a {@link PollingWatchService}
+ * instead. Its keys behave like native watch keys, so they are handled by the same event loop, running on a second
+ * thread.
+ */
 public class DirectoryWatcher implements Callable<Void> {
 
+    /**
+     * Deletions are watched as well, to keep the snapshots, and so the numbers in use, up to date
+     */
+    private static final WatchEvent.Kind<?>[] WATCH_EVENT_KINDS = {
+        StandardWatchEventKinds.ENTRY_CREATE,
+        StandardWatchEventKinds.ENTRY_DELETE,
+    };
+
+    private static final long DEFAULT_DEBOUNCE_WINDOW_MILLIS = 500;
+    private static final long DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private static final Map<WatchKey, WatchedDirectory> WATCHED_DIRECTORIES = new ConcurrentHashMap<>();
+    private static final Map<Path, WatchKey> WATCH_KEYS = new ConcurrentHashMap<>();
+    private static final Set<Path> ROOT_DIRECTORY_PATHS = ConcurrentHashMap.newKeySet();
+
+    /**
+     * File system types that do not send change notifications to a native watch service
+     */
+    private static final Set<String> POLLING_FILE_STORE_TYPES = Set.of(
+        "9p",
+        "afpfs",
+        "cifs",
+        "davfs",
+        "fuse.sshfs",
+        "nfs",
+        "nfs4",
+        "smb2",
+        "smb3",
+        "smbfs"
+    );
+
+    private static final long DEFAULT_POLLING_MIN_INTERVAL_MILLIS = 250;
+    private static final long DEFAULT_POLLING_MAX_INTERVAL_MILLIS = 5000;
+
+    /**
+     * Guards the number of created files that set the clipboard, so priming the clipboard cannot overwrite the new
+     * filename of a file that was created during the scan
+     */
+    private static final Object CLIPBOARD_LOCK = new Object();
+
+    private static long handledFileCount;
+
     @Nullable private static WatchService watchService;
+    @Nullable private static PollingWatchService pollingWatchService;
+
+    private final WatchService directoryWatchService;
+
+    private final EventCoalescer eventCoalescer = new EventCoalescer(
+        getLong("watcher.debounce-window-ms", DEFAULT_DEBOUNCE_WINDOW_MILLIS)
+    );
+
+    private final TemporaryFileFilter temporaryFileFilter = createTemporaryFileFilter();
+
+    /**
+     * Creates a directory watcher that handles the events of all directories that are registered with the given watch
+     * service.
+     *
+     * @see #getWatchServices()
+     */
+    public DirectoryWatcher(WatchService directoryWatchService) {
+        this.directoryWatchService = directoryWatchService;
+    }
 
-    public DirectoryWatcher() {}
+    private static TemporaryFileFilter createTemporaryFileFilter() {
+        String patterns = getString("watcher.ignored-patterns", TemporaryFileFilter.DEFAULT_PATTERNS);
 
-    public static void closeWatchService() {
-        if (watchService == null) return;
+        try {
+            return TemporaryFileFilter.compile(patterns);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            System.err.println(
+                "Invalid ignored patterns (" + illegalArgumentException.getMessage() + "), using the default patterns"
+            );
+
+            return TemporaryFileFilter.compile(TemporaryFileFilter.DEFAULT_PATTERNS);
+        }
+    }
 
+    /**
+     * Closes the watch services, which makes the directory watchers stop after handling the events that they already
+     * took. The watched directories are kept until {@link #closeWatchService()}, so their snapshots can be stored once
+     * the directory watchers have stopped.
+     */
+    public static synchronized void stopWatchService() {
         try {
-            watchService.close();
-            System.out.println("Successfully closed watch service");
+            if (watchService != null) watchService.close();
+            if (pollingWatchService != null) pollingWatchService.close();
         } catch (IOException ioException) {
             ioException.printStackTrace();
         }
     }
 
-    private static WatchService createWatchService() throws IOException {
-        return FileSystems.getDefault().newWatchService();
+    /**
+     * Closes the watch services, if they are not closed yet, stores the snapshots of the watched directories and
+     * forgets the watched directories.
+     */
+    public static synchronized void closeWatchService() {
+        if (watchService == null && pollingWatchService == null) return;
+
+        stopWatchService();
+        WATCHED_DIRECTORIES.values().forEach(DirectoryWatcher::saveSnapshot);
+        System.out.println("Successfully closed watch service");
+
+        watchService = null;
+        pollingWatchService = null;
+        WATCHED_DIRECTORIES.clear();
+        WATCH_KEYS.clear();
+        ROOT_DIRECTORY_PATHS.clear();
     }
 
-    @Override
-    public Void call() {
+    private static synchronized WatchService getOrCreateWatchService() throws IOException {
+        if (watchService == null) watchService = FileSystems.getDefault().newWatchService();
+
+        return watchService;
+    }
+
+    private static synchronized PollingWatchService getOrCreatePollingWatchService() {
+        if (pollingWatchService == null) {
+            pollingWatchService = new PollingWatchService(
+                getLong("watcher.polling.min-interval-ms", DEFAULT_POLLING_MIN_INTERVAL_MILLIS),
+                getLong("watcher.polling.max-interval-ms", DEFAULT_POLLING_MAX_INTERVAL_MILLIS)
+            );
+        }
+
+        return pollingWatchService;
+    }
+
+    /**
+     * Returns the watch services that are in use. Every watch service needs its own running directory watcher.
+     */
+    public static synchronized List<WatchService> getWatchServices() {
+        List<WatchService> watchServices = new ArrayList<>(2);
+
+        if (watchService != null) watchServices.add(watchService);
+        if (pollingWatchService != null) watchServices.add(pollingWatchService);
+
+        return watchServices;
+    }
+
+    /**
+     * Decides whether a directory is watched by polling instead of by native change notifications. The
+     * {@code watcher.engine} setting forces an engine ({@code native} or {@code polling}); by default ({@code auto})
+     * directories are polled if they are listed in the {@code watcher.polling-directories} setting or are on a file
+     * system that does not send change notifications.
+     */
+    static boolean isPollingRequired(Path directoryPath) {
+        String engine = getString("watcher.engine", "auto");
+
+        if (engine.equalsIgnoreCase("polling")) return true;
+        if (engine.equalsIgnoreCase("native")) return false;
+
+        for (String pollingDirectory : getString("watcher.polling-directories", "").split(File.pathSeparator)) {
+            if (pollingDirectory.isBlank()) continue;
+
+            try {
+                if (directoryPath.startsWith(normalize(Path.of(pollingDirectory.trim())))) return true;
+            } catch (InvalidPathException invalidPathException) {
+                System.err.println("Invalid directory path format in watcher.polling-directories: " + pollingDirectory);
+            }
+        }
+
         try {
-            WatchKey watchKey;
-            Path directoryPath = getWatchedDirectoryPath();
-            watchService = createWatchService();
+            return POLLING_FILE_STORE_TYPES.contains(Files.getFileStore(directoryPath).type().toLowerCase());
+        } catch (IOException | SecurityException exception) {
+            return false;
+        }
+    }
 
-            if (directoryPath == null) throw new IllegalStateException("Directory path is not set");
+    /**
+     * Returns the paths of all directories that were added to be watched, in no particular order. Subdirectories of
+     * recursively watched directories are not included.
+     */
+    public static List<Path> getWatchedDirectoryPaths() {
+        return new ArrayList<>(ROOT_DIRECTORY_PATHS);
+    }
 
-            directoryPath.register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
-            printCurrentDirectoryMessage();
+    /**
+     * Returns the number of directories that are registered with the watch service, including subdirectories of
+     * recursively watched directories.
+     */
+    public static int getRegisteredDirectoryCount() {
+        return WATCH_KEYS.size();
+    }
 
-            /* Wait for and retrieve watch events */
-            while ((watchKey = watchService.take()) != null) {
-                if (Thread.currentThread().isInterrupted()) return null;
+    public static boolean isDirectoryWatched(Path directoryPath) {
+        return WATCH_KEYS.containsKey(normalize(directoryPath));
+    }
 
-                for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
-                    @SuppressWarnings("unchecked")
-                    WatchEvent<Path> pathWatchEvent = (WatchEvent<Path>) watchEvent;
-                    String filename = pathWatchEvent.context().toString();
+    /**
+     * Returns whether a directory is being watched together with its subdirectories.
+     */
+    public static boolean isDirectoryWatchedRecursively(Path directoryPath) {
+        @Nullable WatchKey watchKey = WATCH_KEYS.get(normalize(directoryPath));
+        @Nullable WatchedDirectory watchedDirectory = watchKey == null ? null : WATCHED_DIRECTORIES.get(watchKey);
 
-                    if (filename.endsWith(".crdownload")) break;
+        return watchedDirectory != null && watchedDirectory.isRecursive();
+    }
+
+    private static Path normalize(Path directoryPath) {
+        return directoryPath.toAbsolutePath().normalize();
+    }
 
-                    /* The code up to the last break runs twice */
-                    @Nullable String clipboardText = getClipboardText();
-                    String newFilename = createNewFilename(filename);
+    /**
+     * Registers a single directory with the watch service and links it to its parent directory, if it has one.
+     */
+    static WatchedDirectory registerDirectory(
+        WatchService watchService,
+        Path directoryPath,
+        @Nullable WatchedDirectory parentDirectory
+    ) throws IOException {
+        boolean recursive = parentDirectory != null && parentDirectory.isRecursive();
+        Path rootPath = parentDirectory != null ? parentDirectory.getRootPath() : directoryPath;
 
-                    if (clipboardText != null && clipboardText.equals(newFilename)) break;
+        return registerDirectory(watchService, directoryPath, rootPath, recursive, parentDirectory);
+    }
 
-                    String newFileCreatedText = "New file is created: ";
-                    System.out.println(createDivider((newFileCreatedText.length() + filename.length()) / 2));
-                    System.out.println(newFileCreatedText + filename);
+    private static WatchedDirectory registerDirectory(
+        WatchService watchService,
+        Path directoryPath,
+        Path rootPath,
+        boolean recursive,
+        @Nullable WatchedDirectory parentDirectory
+    ) throws IOException {
+        WatchedDirectory watchedDirectory = new WatchedDirectory(
+            directoryPath,
+            rootPath,
+            recursive,
+            parentDirectory != null ? parentDirectory.getNamingTemplate() : NamingTemplate.forDirectory(directoryPath)
+        );
+        /* A polled directory is compared against the snapshot of the watched directory, which the caller fills */
+        WatchKey watchKey = watchService instanceof PollingWatchService directoryPollingWatchService
+            ? directoryPollingWatchService.register(directoryPath, watchedDirectory.getSnapshot(), WATCH_EVENT_KINDS)
+            : directoryPath.register(watchService, WATCH_EVENT_KINDS);
 
-                    setClipboardText(newFilename);
-                }
+        WATCHED_DIRECTORIES.put(watchKey, watchedDirectory);
+        WATCH_KEYS.put(directoryPath, watchKey);
+
+        if (parentDirectory != null) parentDirectory.getSubdirectoryPaths().add(directoryPath);
+
+        return watchedDirectory;
+    }
+
+    /**
+     * Registers all subdirectories of a registered directory in parallel.
+     *
+     * @param filePaths collects the files that are found in the subtree, or {@code null} if they are not needed
+     */
+    private static void registerDirectoryTree(
+        WatchService watchService,
+        WatchedDirectory watchedDirectory,
+        @Nullable Queue<Path> filePaths
+    ) {
+        AtomicInteger failedRegistrationCount = new AtomicInteger();
+
+        ForkJoinPool.commonPool().invoke(
+            new DirectoryTreeRegistration(watchService, watchedDirectory, filePaths, failedRegistrationCount)
+        );
+
+        if (failedRegistrationCount.get() > 0) {
+            System.err.println(
+                "Could not watch " +
+                failedRegistrationCount.get() +
+                " subdirectories of directory: " +
+                watchedDirectory.getPath()
+            );
+        }
+    }
+
+    public static boolean watchDirectory(Path directoryPath) throws IOException {
+        return watchDirectory(directoryPath, false);
+    }
+
+    /**
+     * Registers a directory with the shared watch service.
+     *
+     * @param recursive whether all subdirectories, including the ones that are created later on, are watched as well
+     * @return {@code false} if the directory was already being watched
+     */
+    public static synchronized boolean watchDirectory(Path directoryPath, boolean recursive) throws IOException {
+        Path normalizedDirectoryPath = normalize(directoryPath);
+
+        if (WATCH_KEYS.containsKey(normalizedDirectoryPath)) return false;
+
+        WatchService watchService = isPollingRequired(normalizedDirectoryPath)
+            ? getOrCreatePollingWatchService()
+            : getOrCreateWatchService();
+        WatchedDirectory watchedDirectory = registerDirectory(
+            watchService,
+            normalizedDirectoryPath,
+            normalizedDirectoryPath,
+            recursive,
+            null
+        );
+
+        if (recursive) {
+            registerDirectoryTree(watchService, watchedDirectory, null);
+        } else {
+            try {
+                SnapshotStore.load(normalizedDirectoryPath, watchedDirectory.getSnapshot());
+            } catch (IOException | SecurityException exception) {
+                unwatchDirectoryTree(normalizedDirectoryPath);
+                throw exception;
+            }
+        }
+
+        ROOT_DIRECTORY_PATHS.add(normalizedDirectoryPath);
+
+        return true;
+    }
+
+    /**
+     * Stops watching a directory, and all of its registered subdirectories, by cancelling their watch keys.
+     *
+     * @return {@code false} if the directory was not being watched
+     */
+    public static synchronized boolean unwatchDirectory(Path directoryPath) {
+        Path normalizedDirectoryPath = normalize(directoryPath);
+        @Nullable WatchKey watchKey = WATCH_KEYS.get(normalizedDirectoryPath);
+
+        if (watchKey != null) saveSnapshot(WATCHED_DIRECTORIES.get(watchKey));
+
+        if (!unwatchDirectoryTree(normalizedDirectoryPath)) return false;
+
+        ROOT_DIRECTORY_PATHS.remove(normalizedDirectoryPath);
+
+        return true;
+    }
+
+    /**
+     * Stores the snapshot of a directory that is watched on its own, so it does not have to be listed again after a
+     * restart. Recursively watched directories have to be walked to register their subdirectories anyway.
+     */
+    private static void saveSnapshot(@Nullable WatchedDirectory watchedDirectory) {
+        if (watchedDirectory == null || watchedDirectory.isRecursive() || !watchedDirectory.isRoot()) return;
+
+        SnapshotStore.save(watchedDirectory.getPath(), watchedDirectory.getSnapshot());
+    }
+
+    private static boolean unwatchDirectoryTree(Path directoryPath) {
+        if (!WATCH_KEYS.containsKey(directoryPath)) return false;
+
+        Deque<Path> directoryPaths = new ArrayDeque<>();
+        directoryPaths.push(directoryPath);
+
+        while (!directoryPaths.isEmpty()) {
+            @Nullable WatchKey watchKey = WATCH_KEYS.remove(directoryPaths.pop());
+
+            if (watchKey == null) continue;
+
+            watchKey.cancel();
+
+            @Nullable WatchedDirectory watchedDirectory = WATCHED_DIRECTORIES.remove(watchKey);
+
+            if (watchedDirectory != null) directoryPaths.addAll(watchedDirectory.getSubdirectoryPaths());
+        }
+
+        @Nullable Path parentDirectoryPath = directoryPath.getParent();
+        @Nullable WatchKey parentWatchKey = parentDirectoryPath != null ? WATCH_KEYS.get(parentDirectoryPath) : null;
+        @Nullable WatchedDirectory parentDirectory = parentWatchKey != null
+            ? WATCHED_DIRECTORIES.get(parentWatchKey)
+            : null;
+
+        if (parentDirectory != null) parentDirectory.getSubdirectoryPaths().remove(directoryPath);
+
+        return true;
+    }
+
+    private static synchronized void removeWatchKey(WatchKey watchKey) {
+        @Nullable WatchedDirectory watchedDirectory = WATCHED_DIRECTORIES.get(watchKey);
+
+        if (watchedDirectory == null) return;
+
+        unwatchDirectoryTree(watchedDirectory.getPath());
+
+        if (watchedDirectory.isRoot()) {
+            ROOT_DIRECTORY_PATHS.remove(watchedDirectory.getPath());
+            SnapshotStore.delete(watchedDirectory.getPath());
+            System.err.println(
+                "Directory is no longer accessible and stopped being watched: " + watchedDirectory.getPath()
+            );
+        }
+    }
+
+    /**
+     * Registers a subdirectory that was created in a recursively watched directory, together with its own
+     * subdirectories.
+     *
+     * @return the files that were created in the subtree before it was registered
+     */
+    private static List<Path> registerCreatedSubdirectory(
+        WatchService watchService,
+        WatchedDirectory parentDirectory,
+        Path subdirectoryPath
+    ) {
+        Queue<Path> filePaths = new ConcurrentLinkedQueue<>();
+
+        synchronized (DirectoryWatcher.class) {
+            /* The directory was unwatched in the meantime */
+            if (!WATCH_KEYS.containsKey(parentDirectory.getPath())) return List.of();
+
+            try {
+                WatchedDirectory subdirectory = registerDirectory(watchService, subdirectoryPath, parentDirectory);
+                registerDirectoryTree(watchService, subdirectory, filePaths);
+            } catch (IOException | SecurityException exception) {
+                /* The subdirectory was deleted or is inaccessible, so there is nothing to watch */
+                return List.of();
+            }
+        }
+
+        return new ArrayList<>(filePaths);
+    }
+
+    private static boolean containsOverflowEvent(List<WatchEvent<?>> watchEvents) {
+        for (WatchEvent<?> watchEvent : watchEvents) {
+            if (watchEvent.kind() == StandardWatchEventKinds.OVERFLOW) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Rescans a directory of which events were lost, finding the entries that were created since they are missing
+     * from its snapshot.
+     *
+     * @param createdFilePaths collects the created files, from oldest to newest
+     */
+    private static void recoverLostEvents(
+        WatchService watchService,
+        WatchedDirectory watchedDirectory,
+        List<Path> createdFilePaths
+    ) {
+        List<Path> newEntryPaths;
+
+        try {
+            newEntryPaths = watchedDirectory.getSnapshot().reconcile(watchedDirectory.getPath());
+        } catch (IOException | SecurityException exception) {
+            System.err.println("Events were lost and could not rescan directory: " + watchedDirectory.getPath());
+            return;
+        }
+
+        for (Path entryPath : newEntryPaths) {
+            if (watchedDirectory.isRecursive() && Files.isDirectory(entryPath, LinkOption.NOFOLLOW_LINKS)) {
+                createdFilePaths.addAll(registerCreatedSubdirectory(watchService, watchedDirectory, entryPath));
+                continue;
+            }
+
+            createdFilePaths.add(entryPath);
+        }
+
+        System.out.println(
+            "Events were lost in directory " +
+            watchedDirectory.getPath() +
+            ", recovered " +
+            createdFilePaths.size() +
+            " new files by rescanning it"
+        );
+    }
+
+    /**
+     * Handles the files that were created in one batch of watch events. Temporary files and files that were already
+     * handled within the debounce window are skipped, and the clipboard is only set once, for the last created file of
+     * the batch.
+     */
+    private void processCreatedFiles(List<Path> createdFilePaths, long eventNanos) {
+        if (createdFilePaths.isEmpty()) return;
+
+        long nowNanos = System.nanoTime();
+        @Nullable Path lastCreatedFilePath = null;
+
+        EVENTS_RECEIVED.add(createdFilePaths.size());
+
+        for (Path createdFilePath : createdFilePaths) {
+            String filename = createdFilePath.getFileName().toString();
+
+            /* Only skip the temporary file itself, the other files of the batch are still handled */
+            if (temporaryFileFilter.matches(filename)) {
+                EVENTS_FILTERED.increment();
+                continue;
+            }
+
+            if (!eventCoalescer.tryHandle(createdFilePath, nowNanos)) {
+                DUPLICATES_SUPPRESSED.increment();
+                continue;
+            }
+
+            String newFileCreatedText = "New file is created in " + createdFilePath.getParent() + ": ";
+            System.out.println(createDivider((newFileCreatedText.length() + filename.length()) / 2));
+            System.out.println(newFileCreatedText + filename);
+
+            lastCreatedFilePath = createdFilePath;
+        }
+
+        if (lastCreatedFilePath == null) return;
+
+        String newFilename = createFreeFilename(lastCreatedFilePath);
+
+        synchronized (CLIPBOARD_LOCK) {
+            handledFileCount++;
+            setClipboardTextAsync(newFilename, eventNanos);
+        }
+    }
+
+    /**
+     * Sets the clipboard to the new filename of the newest file in a watched directory, if this is enabled with the
+     * {@code watcher.prime-clipboard} setting, so the first new file does not have to be named by hand.
+     * <p>
+     * The directory is scanned on the common fork/join pool without waiting for it. If a created file was handled
+     * before the scan finished, the clipboard already holds a newer filename and is left alone.
+     */
+    public static void primeClipboard(Path directoryPath) {
+        if (!getBoolean("watcher.prime-clipboard", false)) return;
+
+        Path normalizedDirectoryPath = normalize(directoryPath);
+        @Nullable WatchKey watchKey = WATCH_KEYS.get(normalizedDirectoryPath);
+        @Nullable WatchedDirectory watchedDirectory = watchKey != null ? WATCHED_DIRECTORIES.get(watchKey) : null;
+
+        if (watchedDirectory == null) return;
+
+        long startHandledFileCount;
+
+        synchronized (CLIPBOARD_LOCK) {
+            startHandledFileCount = handledFileCount;
+        }
+
+        NewestFileScan newestFileScan = new NewestFileScan(
+            normalizedDirectoryPath,
+            watchedDirectory.isRecursive(),
+            createTemporaryFileFilter()
+        );
+
+        ForkJoinPool.commonPool().execute(() -> {
+            NewestFileScan.@Nullable NewestFile newestFile = newestFileScan.invoke();
+
+            if (newestFile == null) return;
+
+            String newFilename = createFreeFilename(newestFile.path());
+
+            synchronized (CLIPBOARD_LOCK) {
+                if (handledFileCount != startHandledFileCount) return;
+
+                System.out.println(
+                    "Newest file in " + newestFile.path().getParent() + ": " + newestFile.path().getFileName()
+                );
+                setClipboardTextAsync(newFilename);
+            }
+        });
+    }
+
+    /**
+     * Creates the new filename for a created file, skipping numbers that are already in use in its directory.
+     */
+    private static String createFreeFilename(Path createdFilePath) {
+        FilenameParts filenameParts = FilenameParts.parse(createdFilePath.getFileName().toString());
+        @Nullable WatchKey watchKey = WATCH_KEYS.get(createdFilePath.getParent());
+        @Nullable WatchedDirectory watchedDirectory = watchKey != null ? WATCHED_DIRECTORIES.get(watchKey) : null;
+        NamingTemplate namingTemplate = watchedDirectory != null
+            ? watchedDirectory.getNamingTemplate()
+            : NamingTemplate.DEFAULT;
+        String newFilename = createNewFilename(filenameParts, namingTemplate);
+
+        if (watchedDirectory == null) return newFilename;
+
+        /* The index only knows which last numbers are in use */
+        if (!namingTemplate.incrementsLastNumberByOne()) return newFilename;
+
+        String freeFilename = watchedDirectory.getSequenceIndex().findFreeFilename(newFilename);
+
+        if (!freeFilename.equals(newFilename)) {
+            System.out.println(
+                "Filename " + newFilename + " is already in use, using " + freeFilename + System.lineSeparator()
+            );
+        }
+
+        return freeFilename;
+    }
+
+    /**
+     * Drains the watch service: every watch key is reset as soon as its events are taken and the events are handed to
+     * the processing thread through a bounded {@link EventQueue}, so slow processing does not make the kernel drop
+     * events. Returns only after the processing thread has handled the batches that were still waiting, so the
+     * directory watcher is not done while events of its watch service are being handled.
+     */
+    @Override
+    public Void call() {
+        EventQueue eventQueue = new EventQueue(
+            (int) getLong("watcher.queue-capacity", DEFAULT_QUEUE_CAPACITY),
+            EventQueue.OverflowPolicy.parse(getString("watcher.overflow-policy", "block"))
+        );
+        Thread processingThread = Thread.ofVirtual().name("event-processor").start(() -> processEvents(eventQueue));
+
+        try {
+            WatchKey watchKey;
+
+            /* Wait for and retrieve watch events of all watched directories */
+            while ((watchKey = directoryWatchService.take()) != null) {
+                if (Thread.currentThread().isInterrupted()) return null;
+
+                long eventNanos = System.nanoTime();
+                @Nullable WatchedDirectory watchedDirectory = WATCHED_DIRECTORIES.get(watchKey);
+
+                /* The directory was unwatched after the key got signalled */
+                if (watchedDirectory == null) continue;
+
+                List<WatchEvent<?>> watchEvents = watchKey.pollEvents();
 
                 /* Reset watch key every iteration for continuing to use it for further event retrieval */
                 boolean isWatchKeyValid = watchKey.reset();
 
-                if (!isWatchKeyValid) break;
+                eventQueue.put(
+                    new EventQueue.WatchBatch(
+                        watchKey,
+                        watchedDirectory,
+                        watchEvents,
+                        eventNanos,
+                        isWatchKeyValid,
+                        containsOverflowEvent(watchEvents)
+                    )
+                );
             }
         } catch (InterruptedException interruptedException) {
             try {
@@ -99,10 +678,107 @@ public class DirectoryWatcher implements Callable<Void> {
             } catch (SecurityException securityException) {
                 securityException.printStackTrace();
             }
-        } catch (IOException ioException) {
-            ioException.printStackTrace();
+        } catch (ClosedWatchServiceException closedWatchServiceException) {
+            /* The watch service was closed while waiting for events, which stops watching */
+        } finally {
+            eventQueue.close();
+            awaitTermination(processingThread);
         }
 
         return null;
     }
+
+    /**
+     * Waits for a thread to finish, even if the waiting thread is interrupted (cancelling the directory watcher).
+     */
+    private static void awaitTermination(Thread thread) {
+        boolean interrupted = false;
+
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException interruptedException) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private void processEvents(EventQueue eventQueue) {
+        try {
+            @Nullable EventQueue.WatchBatch watchBatch;
+
+            while ((watchBatch = eventQueue.take()) != null) {
+                try {
+                    processWatchBatch(watchBatch);
+                } catch (ClosedWatchServiceException closedWatchServiceException) {
+                    /* Watching stopped while the last batches were handled */
+                } catch (RuntimeException runtimeException) {
+                    System.err.println(
+                        "Could not handle the events of directory " +
+                        watchBatch.watchedDirectory().getPath() +
+                        ": " +
+                        runtimeException.getMessage()
+                    );
+                }
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processWatchBatch(EventQueue.WatchBatch watchBatch) {
+        @Nullable WatchBatchEvent watchBatchEvent = isFlightRecorderInitialized() ? new WatchBatchEvent() : null;
+
+        if (watchBatchEvent != null) watchBatchEvent.begin();
+
+        WatchedDirectory watchedDirectory = watchBatch.watchedDirectory();
+        Path directoryPath = watchedDirectory.getPath();
+        DirectorySnapshot snapshot = watchedDirectory.getSnapshot();
+        List<Path> createdFilePaths = new ArrayList<>();
+
+        /* Events were lost by the kernel or dropped from the event queue */
+        if (watchBatch.rescan()) recoverLostEvents(directoryWatchService, watchedDirectory, createdFilePaths);
+
+        for (WatchEvent<?> watchEvent : watchBatch.rescan() ? List.<WatchEvent<?>>of() : watchBatch.watchEvents()) {
+            @SuppressWarnings("unchecked")
+            WatchEvent<Path> pathWatchEvent = (WatchEvent<Path>) watchEvent;
+            Path entryPath = directoryPath.resolve(pathWatchEvent.context());
+
+            if (pathWatchEvent.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                snapshot.remove(pathWatchEvent.context().toString());
+
+                synchronized (DirectoryWatcher.class) {
+                    unwatchDirectoryTree(entryPath);
+                }
+                continue;
+            }
+
+            snapshot.add(pathWatchEvent.context().toString());
+
+            if (watchedDirectory.isRecursive() && Files.isDirectory(entryPath, LinkOption.NOFOLLOW_LINKS)) {
+                createdFilePaths.addAll(
+                    registerCreatedSubdirectory(directoryWatchService, watchedDirectory, entryPath)
+                );
+                continue;
+            }
+
+            createdFilePaths.add(entryPath);
+        }
+
+        processCreatedFiles(createdFilePaths, watchBatch.eventNanos());
+
+        if (watchBatchEvent != null) watchBatchEvent.end();
+
+        if (watchBatchEvent != null && watchBatchEvent.shouldCommit()) {
+            watchBatchEvent.directory = directoryPath.toString();
+            watchBatchEvent.batchSize = watchBatch.watchEvents().size();
+            watchBatchEvent.createdFileCount = createdFilePaths.size();
+            watchBatchEvent.overflow = watchBatch.rescan();
+            watchBatchEvent.commit();
+        }
+
+        if (!watchBatch.watchKeyValid()) removeWatchKey(watchBatch.watchKey());
+    }
 }
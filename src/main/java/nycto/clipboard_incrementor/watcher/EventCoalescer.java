@@ -0,0 +1,74 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Suppresses duplicate events for the same file. A file that was handled is not handled again until the debounce
+ * window has passed, which filters out the duplicate create events that some platforms and applications produce.
+ * <p>
+ * Not thread-safe, every directory watcher owns its own coalescer.
+ */
+final class EventCoalescer {
+
+    private final long windowNanos;
+
+    /**
+     * Handled files in the order they were handled, so expired files are always at the head
+     */
+    private final LinkedHashMap<Path, Long> handledFileNanos = new LinkedHashMap<>();
+
+    EventCoalescer(long windowMillis) {
+        this.windowNanos = Math.max(0, windowMillis) * 1_000_000;
+    }
+
+    /**
+     * Marks a file as handled, unless it was already handled within the debounce window.
+     *
+     * @return {@code true} if the file should be handled
+     */
+    boolean tryHandle(Path filePath, long nowNanos) {
+        evictExpired(nowNanos);
+
+        if (handledFileNanos.containsKey(filePath)) return false;
+
+        handledFileNanos.put(filePath, nowNanos);
+
+        return true;
+    }
+
+    private void evictExpired(long nowNanos) {
+        Iterator<Map.Entry<Path, Long>> iterator = handledFileNanos.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            if (nowNanos - iterator.next().getValue() < windowNanos) break;
+
+            iterator.remove();
+        }
+    }
+
+    int size() {
+        return handledFileNanos.size();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.EVENT_BATCHES_COALESCED;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.EVENT_BATCHES_DROPPED;
+import static nycto.clipboard_incrementor.metrics.PipelineMetrics.EVENT_QUEUE_DEPTH;
+
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A bounded ring buffer of watch event batches between the thread that drains the watch service and the thread that
+ * processes the events. What happens when the buffer is full depends on the overflow policy.
+ * <p>
+ * Batches are never lost without a trace: when a batch is dropped, its directory is rescanned instead, before any
+ * other batch is processed, which finds the files of the dropped batch from the snapshot of the directory.
+ */
+final class EventQueue {
+
+    /**
+     * Coalesced batches with more events are turned into a rescan of their directory, so memory stays bounded
+     */
+    static final int MAX_COALESCED_EVENT_COUNT = 1024;
+
+    enum OverflowPolicy {
+        /**
+         * Drops the oldest batch and rescans its directory
+         */
+        DROP_OLDEST,
+
+        /**
+         * Merges the new batch into a waiting batch of the same directory, or drops the oldest batch if there is none
+         */
+        COALESCE,
+
+        /**
+         * Waits until there is room, so the kernel queues the events in the meantime. If the kernel queue overflows as
+         * well, the directory is rescanned after the OVERFLOW event
+         */
+        BLOCK;
+
+        /**
+         * Parses a policy like {@code drop-oldest}, falling back to {@link #BLOCK} for unknown policies.
+         */
+        static OverflowPolicy parse(String policy) {
+            try {
+                return valueOf(policy.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException illegalArgumentException) {
+                System.err.println("Unknown event queue overflow policy: " + policy + ", using block");
+                return BLOCK;
+            }
+        }
+    }
+
+    /**
+     * The events of one watch key, or a rescan of its directory if {@code rescan} is set
+     *
+     * @param eventNanos     the {@link System#nanoTime()} at which the (first) events were received
+     * @param watchKeyValid  whether the watch key was still valid when it was reset
+     */
+    record WatchBatch(
+        WatchKey watchKey,
+        WatchedDirectory watchedDirectory,
+        List<WatchEvent<?>> watchEvents,
+        long eventNanos,
+        boolean watchKeyValid,
+        boolean rescan
+    ) {
+        private WatchBatch toRescan(boolean watchKeyValid) {
+            return new WatchBatch(watchKey, watchedDirectory, List.of(), eventNanos, watchKeyValid, true);
+        }
+    }
+
+    private final WatchBatch[] batches;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    /* Guarded by the lock */
+    private final Map<WatchKey, WatchBatch> pendingRescans = new LinkedHashMap<>();
+    private int head;
+    private int count;
+    private boolean closed;
+
+    EventQueue(int capacity, OverflowPolicy overflowPolicy) {
+        this.batches = new WatchBatch[Math.max(1, capacity)];
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds a batch, applying the overflow policy if the queue is full. Batches that are put after the queue was closed
+     * are ignored.
+     */
+    void put(WatchBatch batch) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (closed) return;
+
+            if (count == batches.length) {
+                switch (overflowPolicy) {
+                    case DROP_OLDEST -> dropOldest();
+                    case COALESCE -> {
+                        if (coalesce(batch)) return;
+
+                        dropOldest();
+                    }
+                    case BLOCK -> {
+                        while (count == batches.length && !closed) notFull.await();
+
+                        if (closed) return;
+                    }
+                }
+            }
+
+            batches[(head + count) % batches.length] = batch;
+            count++;
+            EVENT_QUEUE_DEPTH.increment();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Merges a batch into the newest waiting batch of the same watch key.
+     *
+     * @return whether there was such a batch
+     */
+    private boolean coalesce(WatchBatch batch) {
+        for (int i = count - 1; i >= 0; i--) {
+            int index = (head + i) % batches.length;
+            WatchBatch waitingBatch = batches[index];
+
+            if (waitingBatch.watchKey() != batch.watchKey()) continue;
+
+            int eventCount = waitingBatch.watchEvents().size() + batch.watchEvents().size();
+
+            if (waitingBatch.rescan() || batch.rescan() || eventCount > MAX_COALESCED_EVENT_COUNT) {
+                batches[index] = waitingBatch.toRescan(batch.watchKeyValid());
+            } else {
+                List<WatchEvent<?>> watchEvents = new ArrayList<>(eventCount);
+                watchEvents.addAll(waitingBatch.watchEvents());
+                watchEvents.addAll(batch.watchEvents());
+
+                batches[index] = new WatchBatch(
+                    waitingBatch.watchKey(),
+                    waitingBatch.watchedDirectory(),
+                    watchEvents,
+                    waitingBatch.eventNanos(),
+                    batch.watchKeyValid(),
+                    false
+                );
+            }
+
+            EVENT_BATCHES_COALESCED.increment();
+
+            return true;
+        }
+
+        return false;
+    }
+
+    private void dropOldest() {
+        WatchBatch droppedBatch = batches[head];
+        batches[head] = null;
+        head = (head + 1) % batches.length;
+        count--;
+        EVENT_QUEUE_DEPTH.decrement();
+        EVENT_BATCHES_DROPPED.increment();
+
+        /* Once a watch key is invalid it stays invalid, so the rescan removes it if any dropped batch said so */
+        @Nullable WatchBatch pendingRescan = pendingRescans.get(droppedBatch.watchKey());
+        boolean watchKeyValid =
+            droppedBatch.watchKeyValid() && (pendingRescan == null || pendingRescan.watchKeyValid());
+
+        pendingRescans.put(droppedBatch.watchKey(), droppedBatch.toRescan(watchKeyValid));
+    }
+
+    /**
+     * Waits for the next batch. Rescans of directories whose batches were dropped come first.
+     *
+     * @return the next batch, or {@code null} once the queue is closed and all batches were taken
+     */
+    @Nullable WatchBatch take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && pendingRescans.isEmpty() && !closed) notEmpty.await();
+
+            if (count == 0 && pendingRescans.isEmpty()) return null;
+
+            if (!pendingRescans.isEmpty()) {
+                Iterator<WatchBatch> pendingRescanIterator = pendingRescans.values().iterator();
+                WatchBatch rescan = pendingRescanIterator.next();
+                pendingRescanIterator.remove();
+
+                return rescan;
+            }
+
+            WatchBatch batch = batches[head];
+            batches[head] = null;
+            head = (head + 1) % batches.length;
+            count--;
+            EVENT_QUEUE_DEPTH.decrement();
+            notFull.signal();
+
+            return batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting batches and wakes up the waiting threads. The batches that are still waiting can be taken, after
+     * which {@link #take()} returns {@code null}.
+     */
+    void close() {
+        lock.lock();
+        try {
+            if (closed) return;
+
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
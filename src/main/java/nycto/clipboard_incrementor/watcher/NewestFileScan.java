@@ -0,0 +1,139 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the most recently modified file of a directory, skipping temporary files. The entries of the directory are
+ * split into ranges whose attributes are read by their own fork/join tasks, so very large directories are scanned in
+ * parallel. Subdirectories are scanned by their own tasks as well if the scan is recursive.
+ */
+final class NewestFileScan extends RecursiveTask<NewestFileScan.@Nullable NewestFile> {
+
+    /**
+     * Entries whose attributes are read by a single task
+     */
+    static final int ENTRIES_PER_TASK = 256;
+
+    private final Path directoryPath;
+    private final boolean recursive;
+    private final TemporaryFileFilter temporaryFileFilter;
+
+    NewestFileScan(Path directoryPath, boolean recursive, TemporaryFileFilter temporaryFileFilter) {
+        this.directoryPath = directoryPath;
+        this.recursive = recursive;
+        this.temporaryFileFilter = temporaryFileFilter;
+    }
+
+    @Override
+    @Nullable protected NewestFile compute() {
+        List<Path> entryPaths = new ArrayList<>();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directoryPath)) {
+            for (Path entryPath : directoryStream) {
+                if (!temporaryFileFilter.matches(entryPath.getFileName().toString())) entryPaths.add(entryPath);
+            }
+        } catch (IOException | DirectoryIteratorException | SecurityException exception) {
+            /* The directory was deleted or became inaccessible, it has no newest file */
+            return null;
+        }
+
+        return new EntryRangeScan(entryPaths.toArray(Path[]::new), 0, entryPaths.size()).compute();
+    }
+
+    record NewestFile(Path path, long modifiedMillis) {
+        @Nullable private static NewestFile newer(
+            @Nullable NewestFile newestFile,
+            @Nullable NewestFile otherNewestFile
+        ) {
+            if (newestFile == null) return otherNewestFile;
+            if (otherNewestFile == null) return newestFile;
+
+            return otherNewestFile.modifiedMillis > newestFile.modifiedMillis ? otherNewestFile : newestFile;
+        }
+    }
+
+    private final class EntryRangeScan extends RecursiveTask<@Nullable NewestFile> {
+
+        private final Path[] entryPaths;
+        private final int start;
+        private final int end;
+
+        private EntryRangeScan(Path[] entryPaths, int start, int end) {
+            this.entryPaths = entryPaths;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        @Nullable protected NewestFile compute() {
+            if (end - start > ENTRIES_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                EntryRangeScan firstHalfScan = new EntryRangeScan(entryPaths, start, middle);
+
+                firstHalfScan.fork();
+
+                @Nullable NewestFile newestFile = new EntryRangeScan(entryPaths, middle, end).compute();
+
+                return NewestFile.newer(firstHalfScan.join(), newestFile);
+            }
+
+            @Nullable NewestFile newestFile = null;
+            List<NewestFileScan> subdirectoryScans = new ArrayList<>();
+
+            for (int i = start; i < end; i++) {
+                BasicFileAttributes attributes;
+
+                try {
+                    attributes = Files.readAttributes(
+                        entryPaths[i],
+                        BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS
+                    );
+                } catch (IOException | SecurityException exception) {
+                    /* The entry was deleted in the meantime */
+                    continue;
+                }
+
+                if (attributes.isRegularFile()) {
+                    newestFile = NewestFile.newer(
+                        newestFile,
+                        new NewestFile(entryPaths[i], attributes.lastModifiedTime().toMillis())
+                    );
+                } else if (recursive && attributes.isDirectory()) {
+                    subdirectoryScans.add(new NewestFileScan(entryPaths[i], true, temporaryFileFilter));
+                }
+            }
+
+            for (NewestFileScan subdirectoryScan : invokeAll(subdirectoryScans)) {
+                newestFile = NewestFile.newer(newestFile, subdirectoryScan.join());
+            }
+
+            return newestFile;
+        }
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A watch service that finds changes by polling directories, for file systems that do not send change notifications
+ * (NFS and SMB mounts for example).
+ * <p>
+ * There is no background thread: the thread that waits for a key in {@link #take()} or {@link #poll(long, TimeUnit)}
+ * polls the directories that are due. Every directory is compared against a snapshot of its entries, which is cheap
+ * while the directory is not modified. The poll interval of a directory adapts to its activity: it drops to the
+ * minimum interval right after a change and doubles up to the maximum interval while the directory is idle.
+ */
+final class PollingWatchService implements WatchService {
+
+    private final long minIntervalNanos;
+    private final long maxIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    /**
+     * Keys that are waiting for their next poll, the key that is due first at the head
+     */
+    private final PriorityQueue<PollingWatchKey> scheduledKeys = new PriorityQueue<>(
+        Comparator.comparingLong(key -> key.nextPollNanos)
+    );
+    private final ArrayDeque<PollingWatchKey> signalledKeys = new ArrayDeque<>();
+
+    private volatile boolean closed;
+
+    PollingWatchService(long minIntervalMillis, long maxIntervalMillis) {
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, minIntervalMillis));
+        this.maxIntervalNanos = Math.max(minIntervalNanos, TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis));
+    }
+
+    PollingWatchKey register(Path directoryPath, WatchEvent.Kind<?>... kinds) throws IOException {
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(directoryPath);
+
+        return register(directoryPath, snapshot, kinds);
+    }
+
+    /**
+     * Registers a directory that is compared against the given snapshot, which is shared with the caller instead of
+     * listing the directory a second time. The directory is not polled until the caller has filled the snapshot.
+     */
+    PollingWatchKey register(Path directoryPath, DirectorySnapshot snapshot, WatchEvent.Kind<?>... kinds)
+        throws IOException {
+        checkOpen();
+
+        if (!Files.isDirectory(directoryPath)) throw new NotDirectoryException(directoryPath.toString());
+
+        PollingWatchKey watchKey = new PollingWatchKey(directoryPath, snapshot, Set.of(kinds));
+        watchKey.nextPollNanos = System.nanoTime() + minIntervalNanos;
+
+        lock.lock();
+        try {
+            scheduledKeys.add(watchKey);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        return watchKey;
+    }
+
+    private void checkOpen() {
+        if (closed) throw new ClosedWatchServiceException();
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            scheduledKeys.forEach(watchKey -> watchKey.valid = false);
+            scheduledKeys.clear();
+            signalledKeys.clear();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @Nullable public WatchKey poll() {
+        checkOpen();
+
+        lock.lock();
+        try {
+            return signalledKeys.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    @Nullable public WatchKey poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitSignalledKey(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    @Override
+    public WatchKey take() throws InterruptedException {
+        @Nullable WatchKey watchKey = null;
+
+        while (watchKey == null) watchKey = awaitSignalledKey(Long.MAX_VALUE);
+
+        return watchKey;
+    }
+
+    /**
+     * Polls the directories that are due until a key is signalled or the deadline passes.
+     *
+     * @param deadlineNanos the deadline, or {@link Long#MAX_VALUE} to wait without a deadline
+     */
+    @Nullable private PollingWatchKey awaitSignalledKey(long deadlineNanos) throws InterruptedException {
+        while (true) {
+            @Nullable PollingWatchKey dueKey = null;
+
+            lock.lockInterruptibly();
+            try {
+                while (dueKey == null) {
+                    checkOpen();
+
+                    if (!signalledKeys.isEmpty()) return signalledKeys.poll();
+
+                    long nowNanos = System.nanoTime();
+                    @Nullable PollingWatchKey nextKey = scheduledKeys.peek();
+                    long wakeUpNanos = nextKey != null ? nextKey.nextPollNanos : Long.MAX_VALUE;
+
+                    if (nextKey != null && wakeUpNanos - nowNanos <= 0) {
+                        dueKey = scheduledKeys.poll();
+                        continue;
+                    }
+
+                    if (deadlineNanos != Long.MAX_VALUE) {
+                        if (deadlineNanos - nowNanos <= 0) return null;
+
+                        if (nextKey == null || deadlineNanos - wakeUpNanos < 0) wakeUpNanos = deadlineNanos;
+                    }
+
+                    if (wakeUpNanos == Long.MAX_VALUE) {
+                        changed.await();
+                    } else {
+                        changed.awaitNanos(wakeUpNanos - nowNanos);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            /* Poll the directory without holding the lock, so registering is never blocked by slow file systems */
+            pollDirectory(dueKey);
+        }
+    }
+
+    private void pollDirectory(PollingWatchKey watchKey) {
+        List<WatchEvent<Path>> watchEvents = new ArrayList<>();
+        boolean directoryExists = true;
+
+        try {
+            /* Until the registration has filled the snapshot, every entry would look new */
+            if (watchKey.snapshot.getListedMillis() != DirectorySnapshot.UNKNOWN_MODIFIED_MILLIS) {
+                findChanges(watchKey, watchEvents);
+            }
+        } catch (NoSuchFileException noSuchFileException) {
+            directoryExists = false;
+        } catch (IOException | SecurityException exception) {
+            /* The directory is temporarily unreachable, try again at the next poll */
+        }
+
+        lock.lock();
+        try {
+            if (!watchKey.valid) return;
+
+            if (!directoryExists) {
+                /* Like the native watch service, a key of a deleted directory is cancelled and signalled */
+                watchKey.valid = false;
+                watchKey.signal(signalledKeys);
+                changed.signalAll();
+                return;
+            }
+
+            long nowNanos = System.nanoTime();
+            watchKey.intervalNanos = watchEvents.isEmpty()
+                ? Math.min(maxIntervalNanos, Math.max(minIntervalNanos, watchKey.intervalNanos * 2))
+                : minIntervalNanos;
+            watchKey.nextPollNanos = nowNanos + watchKey.intervalNanos;
+            scheduledKeys.add(watchKey);
+
+            if (!watchEvents.isEmpty()) {
+                watchKey.pendingEvents.addAll(watchEvents);
+                watchKey.signal(signalledKeys);
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void findChanges(PollingWatchKey watchKey, List<WatchEvent<Path>> watchEvents) throws IOException {
+        @Nullable List<String> deletedNames = watchKey.kinds.contains(StandardWatchEventKinds.ENTRY_DELETE)
+            ? new ArrayList<>()
+            : null;
+
+        for (Path entryPath : watchKey.snapshot.reconcile(watchKey.directoryPath, deletedNames)) {
+            if (watchKey.kinds.contains(StandardWatchEventKinds.ENTRY_CREATE)) {
+                watchEvents.add(new PollingWatchEvent(StandardWatchEventKinds.ENTRY_CREATE, entryPath.getFileName()));
+            }
+        }
+
+        if (deletedNames != null) {
+            for (String deletedName : deletedNames) {
+                watchEvents.add(new PollingWatchEvent(StandardWatchEventKinds.ENTRY_DELETE, Path.of(deletedName)));
+            }
+        }
+    }
+
+    /**
+     * Returns the current poll interval of a key, which is the minimum interval right after a change.
+     */
+    long getIntervalMillis(WatchKey watchKey) {
+        return TimeUnit.NANOSECONDS.toMillis(((PollingWatchKey) watchKey).intervalNanos);
+    }
+
+    private record PollingWatchEvent(WatchEvent.Kind<Path> kind, Path context) implements WatchEvent<Path> {
+        @Override
+        public int count() {
+            return 1;
+        }
+    }
+
+    final class PollingWatchKey implements WatchKey {
+
+        private final Path directoryPath;
+        private final Set<WatchEvent.Kind<?>> kinds;
+        private final DirectorySnapshot snapshot;
+
+        /* Guarded by the lock of the watch service */
+        private final List<WatchEvent<?>> pendingEvents = new ArrayList<>();
+        private boolean signalled;
+        private long nextPollNanos;
+        private long intervalNanos = minIntervalNanos;
+
+        private volatile boolean valid = true;
+
+        private PollingWatchKey(Path directoryPath, DirectorySnapshot snapshot, Set<WatchEvent.Kind<?>> kinds) {
+            this.directoryPath = directoryPath;
+            this.snapshot = snapshot;
+            this.kinds = kinds;
+        }
+
+        private void signal(Deque<PollingWatchKey> signalledKeys) {
+            if (signalled) return;
+
+            signalled = true;
+            signalledKeys.add(this);
+        }
+
+        @Override
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            lock.lock();
+            try {
+                List<WatchEvent<?>> watchEvents = new ArrayList<>(pendingEvents);
+                pendingEvents.clear();
+
+                return watchEvents;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean reset() {
+            lock.lock();
+            try {
+                if (!valid) return false;
+
+                signalled = false;
+
+                if (!pendingEvents.isEmpty()) {
+                    signal(signalledKeys);
+                    changed.signalAll();
+                }
+
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            lock.lock();
+            try {
+                valid = false;
+                scheduledKeys.remove(this);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Path watchable() {
+            return directoryPath;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static nycto.clipboard_incrementor.manager.ConfigManager.CONFIG_DIRECTORY_PATH;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getBoolean;
+import static nycto.clipboard_incrementor.manager.ConfigManager.getString;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Stores the snapshots of watched directories in the config directory, so a restart does not have to list the
+ * directories again. A stored snapshot is validated against the modification time of its directory: if the directory
+ * was not modified since it was stored, the snapshot is used as is, otherwise only the entries that changed in the
+ * meantime are read.
+ * <p>
+ * A snapshot file contains a header (magic number, format version, directory path, modification and listing times),
+ * the name and modification time of every entry and a CRC32 checksum, and is read and written with a single channel
+ * operation.
+ */
+final class SnapshotStore {
+
+    private static final int MAGIC_NUMBER = 0x43495331;
+    private static final int FORMAT_VERSION = 1;
+    private static final String FILE_EXTENSION = ".snapshot";
+
+    /**
+     * Snapshot files larger than this are not read, they cannot be valid
+     */
+    private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    private SnapshotStore() {}
+
+    private static boolean isEnabled() {
+        return getBoolean("watcher.persistent-snapshots", true);
+    }
+
+    static Path getSnapshotFilePath(Path directoryPath) {
+        Path snapshotDirectoryPath = Path.of(
+            getString("watcher.snapshot-directory", CONFIG_DIRECTORY_PATH.resolve("snapshots").toString())
+        );
+        UUID directoryId = UUID.nameUUIDFromBytes(directoryPath.toString().getBytes(StandardCharsets.UTF_8));
+
+        return snapshotDirectoryPath.resolve(directoryId + FILE_EXTENSION);
+    }
+
+    /**
+     * Fills the snapshot of a directory from its stored snapshot and brings it up to date, or lists the directory if
+     * there is no valid stored snapshot.
+     */
+    static void load(Path directoryPath, DirectorySnapshot snapshot) throws IOException {
+        if (!isEnabled() || !read(directoryPath, snapshot)) {
+            snapshot.load(directoryPath);
+            return;
+        }
+
+        /* Only lists the directory if it was modified since the snapshot was stored */
+        snapshot.reconcile(directoryPath);
+    }
+
+    private static boolean read(Path directoryPath, DirectorySnapshot snapshot) {
+        Path snapshotFilePath = getSnapshotFilePath(directoryPath);
+        ByteBuffer buffer;
+
+        try (FileChannel fileChannel = FileChannel.open(snapshotFilePath, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+
+            if (fileSize > MAX_FILE_SIZE) return false;
+
+            buffer = ByteBuffer.allocate((int) fileSize);
+
+            while (buffer.hasRemaining()) {
+                if (fileChannel.read(buffer) < 0) return false;
+            }
+        } catch (NoSuchFileException noSuchFileException) {
+            return false;
+        } catch (IOException | SecurityException exception) {
+            System.err.println("Could not read stored snapshot of directory: " + directoryPath);
+            return false;
+        }
+
+        buffer.flip();
+
+        try {
+            if (!isChecksumValid(buffer)) return false;
+            if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) return false;
+            if (!directoryPath.toString().equals(readString(buffer))) return false;
+
+            long directoryModifiedMillis = buffer.getLong();
+            long listedMillis = buffer.getLong();
+            int entryCount = buffer.getInt();
+            List<String> names = new ArrayList<>(Math.min(entryCount, 1 << 16));
+            long[] modifiedMillis = new long[entryCount];
+
+            for (int i = 0; i < entryCount; i++) {
+                names.add(readString(buffer));
+                modifiedMillis[i] = buffer.getLong();
+            }
+
+            for (int i = 0; i < entryCount; i++) snapshot.add(names.get(i), modifiedMillis[i]);
+
+            snapshot.markListed(directoryModifiedMillis, listedMillis);
+
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException exception) {
+            return false;
+        }
+    }
+
+    private static boolean isChecksumValid(ByteBuffer buffer) {
+        if (buffer.remaining() < Integer.BYTES) return false;
+
+        int checksumIndex = buffer.limit() - Integer.BYTES;
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.slice(0, checksumIndex));
+
+        if ((int) crc32.getValue() != buffer.getInt(checksumIndex)) return false;
+
+        buffer.limit(checksumIndex);
+
+        return true;
+    }
+
+    /**
+     * Stores the snapshot of a directory, replacing its previously stored snapshot.
+     */
+    static void save(Path directoryPath, DirectorySnapshot snapshot) {
+        if (!isEnabled()) return;
+
+        Path snapshotFilePath = getSnapshotFilePath(directoryPath);
+        Path temporaryFilePath = snapshotFilePath.resolveSibling(snapshotFilePath.getFileName() + ".tmp");
+
+        try {
+            ByteBuffer buffer = write(directoryPath, snapshot);
+
+            Files.createDirectories(snapshotFilePath.getParent());
+
+            try (
+                FileChannel fileChannel = FileChannel.open(
+                    temporaryFilePath,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING
+                )
+            ) {
+                while (buffer.hasRemaining()) fileChannel.write(buffer);
+            }
+
+            try {
+                Files.move(
+                    temporaryFilePath,
+                    snapshotFilePath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE
+                );
+            } catch (AtomicMoveNotSupportedException atomicMoveNotSupportedException) {
+                Files.move(temporaryFilePath, snapshotFilePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | SecurityException exception) {
+            System.err.println("Could not store snapshot of directory: " + directoryPath);
+        }
+    }
+
+    private static ByteBuffer write(Path directoryPath, DirectorySnapshot snapshot) {
+        List<byte[]> names = new ArrayList<>(snapshot.size());
+        List<Long> modifiedMillis = new ArrayList<>(snapshot.size());
+        byte[] directoryPathBytes = directoryPath.toString().getBytes(StandardCharsets.UTF_8);
+        long directoryModifiedMillis = snapshot.getDirectoryModifiedMillis();
+        long listedMillis = snapshot.getListedMillis();
+
+        snapshot.forEachEntry((name, entryModifiedMillis) -> {
+            names.add(name.getBytes(StandardCharsets.UTF_8));
+            modifiedMillis.add(entryModifiedMillis);
+        });
+
+        int size = 4 * Integer.BYTES + directoryPathBytes.length + 2 * Long.BYTES + Integer.BYTES;
+
+        for (byte[] name : names) size += Integer.BYTES + name.length + Long.BYTES;
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC_NUMBER).putInt(FORMAT_VERSION);
+        buffer.putInt(directoryPathBytes.length).put(directoryPathBytes);
+        buffer.putLong(directoryModifiedMillis).putLong(listedMillis);
+        buffer.putInt(names.size());
+
+        for (int i = 0; i < names.size(); i++) {
+            buffer.putInt(names.get(i).length).put(names.get(i)).putLong(modifiedMillis.get(i));
+        }
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc32.getValue());
+
+        return buffer.flip();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+
+        if (length < 0 || length > buffer.remaining()) throw new IllegalArgumentException("Invalid string length");
+
+        int offset = buffer.arrayOffset() + buffer.position();
+        buffer.position(buffer.position() + length);
+
+        return new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes the stored snapshot of a directory, for directories that no longer exist.
+     */
+    static void delete(Path directoryPath) {
+        if (!isEnabled()) return;
+
+        try {
+            Files.deleteIfExists(getSnapshotFilePath(directoryPath));
+        } catch (IOException | SecurityException exception) {
+            /* A stale snapshot is brought up to date when it is loaded */
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.util.*;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Matches the names of partial downloads and temporary files, which should not change the clipboard.
+ * <p>
+ * Patterns are case-insensitive and contain at most one {@code *} wildcard: {@code *.part} matches a suffix,
+ * {@code ~$*} a prefix, {@code .~lock.*#} both and a pattern without wildcard the whole name. The prefixes and
+ * (reversed) suffixes of all patterns are compiled into two tries once, so matching a name walks each trie at most
+ * once, no matter how many patterns there are.
+ */
+public final class TemporaryFileFilter {
+
+    public static final String DEFAULT_PATTERNS =
+        "*.crdownload,*.download,*.part,*.partial,*.tmp,*.temp,~$*,.~lock.*#";
+
+    /**
+     * Every wildcard pattern gets one bit in the pattern masks of the tries
+     */
+    private static final int MAX_WILDCARD_PATTERN_COUNT = Long.SIZE;
+
+    private final TrieNode prefixTrie = new TrieNode();
+    private final TrieNode suffixTrie = new TrieNode();
+    private final Set<String> names = new HashSet<>();
+
+    /**
+     * Minimum name length per wildcard pattern, so a prefix and suffix of the same pattern cannot overlap
+     */
+    private final int[] minimumLengths = new int[MAX_WILDCARD_PATTERN_COUNT];
+    private int wildcardPatternCount;
+
+    public TemporaryFileFilter(Collection<String> patterns) {
+        for (String pattern : patterns) {
+            String trimmedPattern = pattern.trim().toLowerCase(Locale.ROOT);
+
+            if (trimmedPattern.isEmpty()) continue;
+
+            int wildcardIndex = trimmedPattern.indexOf('*');
+
+            if (wildcardIndex < 0) {
+                names.add(trimmedPattern);
+                continue;
+            }
+
+            if (trimmedPattern.indexOf('*', wildcardIndex + 1) >= 0) {
+                throw new IllegalArgumentException("Pattern can contain only one wildcard: " + pattern);
+            }
+
+            if (wildcardPatternCount == MAX_WILDCARD_PATTERN_COUNT) {
+                throw new IllegalArgumentException(
+                    "Cannot use more than " + MAX_WILDCARD_PATTERN_COUNT + " patterns with a wildcard"
+                );
+            }
+
+            int patternIndex = wildcardPatternCount++;
+            String prefix = trimmedPattern.substring(0, wildcardIndex);
+            String suffix = trimmedPattern.substring(wildcardIndex + 1);
+
+            minimumLengths[patternIndex] = prefix.length() + suffix.length();
+            prefixTrie.insert(prefix, false, patternIndex);
+            suffixTrie.insert(suffix, true, patternIndex);
+        }
+    }
+
+    /**
+     * Compiles a comma-separated list of patterns.
+     */
+    public static TemporaryFileFilter compile(String patterns) {
+        return new TemporaryFileFilter(Arrays.asList(patterns.split(",")));
+    }
+
+    public boolean matches(String filename) {
+        if (!names.isEmpty() && names.contains(filename.toLowerCase(Locale.ROOT))) return true;
+        if (wildcardPatternCount == 0) return false;
+
+        long matches = suffixTrie.match(filename, true);
+
+        if (matches == 0) return false;
+
+        matches &= prefixTrie.match(filename, false);
+
+        while (matches != 0) {
+            int patternIndex = Long.numberOfTrailingZeros(matches);
+
+            if (filename.length() >= minimumLengths[patternIndex]) return true;
+
+            matches &= matches - 1;
+        }
+
+        return false;
+    }
+
+    private static final class TrieNode {
+
+        private char[] characters = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+
+        /**
+         * Patterns of which the prefix or suffix ends at this node, one bit per pattern
+         */
+        private long patternMask;
+
+        @Nullable private TrieNode getChild(char character) {
+            for (int i = 0; i < characters.length; i++) {
+                if (characters[i] == character) return children[i];
+            }
+
+            return null;
+        }
+
+        private void insert(String string, boolean reversed, int patternIndex) {
+            TrieNode node = this;
+            int length = string.length();
+
+            for (int i = 0; i < length; i++) {
+                char character = string.charAt(reversed ? length - 1 - i : i);
+                @Nullable TrieNode child = node.getChild(character);
+
+                if (child == null) {
+                    child = new TrieNode();
+                    node.characters = Arrays.copyOf(node.characters, node.characters.length + 1);
+                    node.children = Arrays.copyOf(node.children, node.children.length + 1);
+                    node.characters[node.characters.length - 1] = character;
+                    node.children[node.children.length - 1] = child;
+                }
+
+                node = child;
+            }
+
+            node.patternMask |= 1L << patternIndex;
+        }
+
+        /**
+         * Walks the trie along the name, from its end if reversed, and collects all patterns that end on the way.
+         */
+        private long match(String filename, boolean reversed) {
+            long matches = patternMask;
+            @Nullable TrieNode node = this;
+            int length = filename.length();
+
+            for (int i = 0; i < length; i++) {
+                char character = Character.toLowerCase(filename.charAt(reversed ? length - 1 - i : i));
+                node = node.getChild(character);
+
+                if (node == null) break;
+
+                matches |= node.patternMask;
+            }
+
+            return matches;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import nycto.clipboard_incrementor.manager.NamingTemplate;
+import nycto.clipboard_incrementor.manager.SequenceIndex;
+
+/**
+ * A directory that is registered with the watch service. Subdirectories of a recursively watched directory are
+ * registered as well and keep track of their own subdirectories, so a deleted subtree can be unregistered without
+ * walking the file system.
+ */
+final class WatchedDirectory {
+
+    private final Path path;
+    private final Path rootPath;
+    private final boolean recursive;
+    private final Set<Path> subdirectoryPaths = ConcurrentHashMap.newKeySet();
+    private final SequenceIndex sequenceIndex = new SequenceIndex();
+    private final DirectorySnapshot snapshot = new DirectorySnapshot(sequenceIndex);
+    private final NamingTemplate namingTemplate;
+
+    WatchedDirectory(Path path, Path rootPath, boolean recursive, NamingTemplate namingTemplate) {
+        this.path = path;
+        this.rootPath = rootPath;
+        this.recursive = recursive;
+        this.namingTemplate = namingTemplate;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    Path getRootPath() {
+        return rootPath;
+    }
+
+    boolean isRecursive() {
+        return recursive;
+    }
+
+    boolean isRoot() {
+        return path.equals(rootPath);
+    }
+
+    DirectorySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the numbers that are in use in the filenames of the directory, which is kept up to date with its
+     * snapshot.
+     */
+    SequenceIndex getSequenceIndex() {
+        return sequenceIndex;
+    }
+
+    /**
+     * Returns the compiled naming template of the directory, which subdirectories share with their root directory.
+     */
+    NamingTemplate getNamingTemplate() {
+        return namingTemplate;
+    }
+
+    Set<Path> getSubdirectoryPaths() {
+        return subdirectoryPaths;
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class BatchModeTest {
+
+    private static String process(BatchMode batchMode, String input) throws IOException, InterruptedException {
+        StringWriter output = new StringWriter();
+        batchMode.process(new BufferedReader(new StringReader(input)), output);
+
+        return output.toString();
+    }
+
+    @Test
+    void process_keepOrderAcrossChunks() throws IOException, InterruptedException {
+        String input = IntStream.range(0, 10_000)
+            .mapToObj(number -> "scan_" + number + ".png")
+            .collect(Collectors.joining("\n"));
+        String expectedOutput = IntStream.range(1, 10_001)
+            .mapToObj(number -> "scan_" + number + System.lineSeparator())
+            .collect(Collectors.joining());
+
+        assertEquals(expectedOutput, process(new BatchMode(7, 4), input));
+    }
+
+    @Test
+    void process_passThroughEmptyLines() throws IOException, InterruptedException {
+        String expectedOutput =
+            "img_6" + System.lineSeparator() + System.lineSeparator() + "notes (1)" + System.lineSeparator();
+
+        assertEquals(expectedOutput, process(new BatchMode(2, 2), "img_5.jpg\n\nnotes.txt\n"));
+    }
+
+    @Test
+    void process_emptyInput() throws IOException, InterruptedException {
+        assertEquals("", process(new BatchMode(BatchMode.DEFAULT_CHUNK_SIZE, 2), ""));
+    }
+}
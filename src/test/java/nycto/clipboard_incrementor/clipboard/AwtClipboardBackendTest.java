@@ -0,0 +1,58 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.clipboard;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.StringSelection;
+import org.junit.jupiter.api.Test;
+
+class AwtClipboardBackendTest {
+
+    @Test
+    void getText_emptyClipboard() {
+        AwtClipboardBackend clipboardBackend = new AwtClipboardBackend(new Clipboard("testClipboard"));
+
+        assertNull(clipboardBackend.getText());
+    }
+
+    @Test
+    void setAndGetText() {
+        Clipboard clipboard = new Clipboard("testClipboard");
+        AwtClipboardBackend clipboardBackend = new AwtClipboardBackend(clipboard);
+
+        clipboardBackend.setText("scan_0043.png");
+
+        assertEquals("scan_0043.png", clipboardBackend.getText());
+        assertInstanceOf(StringSelection.class, clipboard.getContents(null));
+    }
+
+    @Test
+    void getText_otherApplicationSetClipboard() {
+        Clipboard clipboard = new Clipboard("testClipboard");
+        AwtClipboardBackend clipboardBackend = new AwtClipboardBackend(clipboard);
+
+        clipboardBackend.setText("scan_0043.png");
+        clipboard.setContents(new StringSelection("copied by another application"), null);
+
+        assertEquals("copied by another application", clipboardBackend.getText());
+    }
+}
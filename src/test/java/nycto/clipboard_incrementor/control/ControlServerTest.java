@@ -0,0 +1,191 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.control;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import nycto.clipboard_incrementor.command.CommandResult;
+import nycto.clipboard_incrementor.manager.ConsoleManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ControlServerTest {
+
+    @TempDir
+    Path temporaryDirectory;
+
+    @Test
+    void send_respondToConcurrentClients() throws Exception {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+
+        try (
+            ControlServer controlServer = new ControlServer(
+                socketPath,
+                request -> CommandResult.success("echo " + request)
+            );
+            ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()
+        ) {
+            List<Future<CommandResult>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 50; i++) {
+                String request = "print " + i;
+                futures.add(executorService.submit(() -> ControlClient.send(socketPath, request)));
+            }
+
+            for (int i = 0; i < 50; i++) {
+                assertEquals(CommandResult.success("echo print " + i), futures.get(i).get());
+            }
+        }
+
+        assertFalse(Files.exists(socketPath));
+    }
+
+    @Test
+    void send_respondWhileOtherCommandIsRunning() throws Exception {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+        CountDownLatch slowCommandLatch = new CountDownLatch(1);
+
+        try (
+            ControlServer controlServer = new ControlServer(socketPath, request -> {
+                if (request.equals("add")) {
+                    try {
+                        slowCommandLatch.await();
+                    } catch (InterruptedException interruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+
+                return CommandResult.success(request);
+            });
+            ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor()
+        ) {
+            Future<CommandResult> slowCommand = executorService.submit(() -> ControlClient.send(socketPath, "add"));
+
+            assertEquals(CommandResult.success("stats"), ControlClient.send(socketPath, "stats"));
+            assertFalse(slowCommand.isDone());
+
+            slowCommandLatch.countDown();
+
+            assertEquals(CommandResult.success("add"), slowCommand.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void controlServer_rejectDirectoryAccessibleByOthers() throws IOException {
+        assumeTrue(Files.getFileAttributeView(temporaryDirectory, PosixFileAttributeView.class) != null);
+
+        Path directoryPath = Files.createDirectory(temporaryDirectory.resolve("shared"));
+        Files.setPosixFilePermissions(directoryPath, PosixFilePermissions.fromString("rwxr-xr-x"));
+
+        assertThrows(
+            IOException.class,
+            () -> new ControlServer(directoryPath.resolve("control.sock"), CommandResult::success)
+        );
+        assertFalse(Files.exists(directoryPath.resolve("control.sock")));
+    }
+
+    @Test
+    void send_reportFailedCommand() throws IOException {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+
+        try (ControlServer controlServer = new ControlServer(socketPath, ConsoleManager::executeCommand)) {
+            assertEquals(CommandResult.failure("Unknown command: jump"), ControlClient.send(socketPath, "jump"));
+            assertEquals(
+                CommandResult.failure("Command is only available on the console: stop"),
+                ControlClient.send(socketPath, "stop")
+            );
+            assertEquals(
+                CommandResult.failure("Directory path must be absolute: relative"),
+                ControlClient.send(socketPath, "change relative")
+            );
+            assertTrue(ControlClient.send(socketPath, "help").message().startsWith("Available commands:"));
+        }
+    }
+
+    @Test
+    void read_acceptRequestWithoutLineSeparator() throws IOException {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+
+        try (
+            ControlServer controlServer = new ControlServer(socketPath, request -> CommandResult.success(request));
+            SocketChannel socketChannel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))
+        ) {
+            socketChannel.write(ByteBuffer.wrap("stats".getBytes(StandardCharsets.UTF_8)));
+            socketChannel.shutdownOutput();
+
+            assertEquals("ok\nstats\n", readResponse(socketChannel));
+        }
+    }
+
+    @Test
+    void read_rejectTooLongRequest() throws IOException {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+
+        try (
+            ControlServer controlServer = new ControlServer(socketPath, request -> CommandResult.success(request));
+            SocketChannel socketChannel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))
+        ) {
+            socketChannel.write(ByteBuffer.wrap(new byte[ControlServer.MAX_REQUEST_LENGTH]));
+
+            assertEquals(
+                "error\nRequest is longer than " + ControlServer.MAX_REQUEST_LENGTH + " bytes\n",
+                readResponse(socketChannel)
+            );
+        }
+    }
+
+    @Test
+    void controlServer_replaceStaleSocket() throws IOException {
+        Path socketPath = temporaryDirectory.resolve("control.sock");
+        Files.createFile(socketPath);
+
+        try (ControlServer controlServer = new ControlServer(socketPath, request -> CommandResult.success(request))) {
+            assertEquals(CommandResult.success("list"), ControlClient.send(socketPath, "list"));
+            assertThrows(IOException.class, () -> new ControlServer(socketPath, CommandResult::success));
+        }
+    }
+
+    private static String readResponse(SocketChannel socketChannel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+        while (socketChannel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) break;
+        }
+
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.junit.jupiter.api.Test;
+
+class BoundedCacheTest {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Test
+    void get_computeOnlyOnMiss() {
+        BoundedCache<String, String> cache = new BoundedCache<>(64, hits, misses);
+        AtomicInteger computationCount = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("img_6", cache.get("img_5.jpg", key -> {
+                computationCount.incrementAndGet();
+                return "img_6";
+            }));
+        }
+
+        assertEquals(1, computationCount.get());
+        assertEquals(2, hits.sum());
+        assertEquals(1, misses.sum());
+    }
+
+    @Test
+    void get_evictLeastRecentlyUsedEntry() {
+        /* A single entry per stripe, so keys that share a stripe evict each other */
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(16, hits, misses);
+
+        cache.get(0, key -> key);
+        cache.get(16, key -> key);
+        cache.get(0, key -> key);
+
+        assertEquals(0, hits.sum());
+        assertEquals(3, misses.sum());
+    }
+
+    @Test
+    void get_respectSizeBelowStripeCount() {
+        BoundedCache<Integer, Integer> cache = new BoundedCache<>(3, hits, misses);
+
+        for (int i = 0; i < 100; i++) cache.get(i, key -> key);
+
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void boundedCache_rejectNonPositiveSize() {
+        assertThrows(IllegalArgumentException.class, () -> new BoundedCache<Integer, Integer>(0, hits, misses));
+    }
+
+    @Test
+    void get_staysBoundedUnderManyKeys() {
+        BoundedCache<String, String> cache = new BoundedCache<>(256, hits, misses);
+
+        try (ExecutorService executorService = Executors.newFixedThreadPool(4)) {
+            for (int thread = 0; thread < 4; thread++) {
+                int offset = thread * 100_000;
+
+                executorService.execute(() -> {
+                    for (int i = 0; i < 100_000; i++) cache.get("scan_" + (offset + i), key -> key);
+                });
+            }
+        }
+
+        assertTrue(cache.size() <= 256, "Cache holds " + cache.size() + " entries");
+        assertEquals(400_000, hits.sum() + misses.sum());
+    }
+}
@@ -22,8 +22,17 @@ package nycto.clipboard_incrementor.manager;
 import static nycto.clipboard_incrementor.manager.ClipboardManager.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
-import java.awt.datatransfer.Clipboard;
+import java.awt.GraphicsEnvironment;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import nycto.clipboard_incrementor.clipboard.ClipboardBackend;
+import nycto.clipboard_incrementor.clipboard.InMemoryClipboardBackend;
+import nycto.clipboard_incrementor.clipboard.StdoutClipboardBackend;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -31,19 +40,19 @@ class ClipboardManagerTest {
 
     @BeforeEach
     void setup() {
-        Clipboard testClipboard = new Clipboard("testClipboard");
-        setClipboard(testClipboard);
+        ClipboardBackend testClipboardBackend = new InMemoryClipboardBackend();
+        setClipboardBackend(testClipboardBackend);
     }
 
     @Test
-    void setAndGetClipboard() {
-        Clipboard expectedClipboard = new Clipboard("expectedClipboard");
+    void setAndGetClipboardBackend() {
+        ClipboardBackend expectedClipboardBackend = new InMemoryClipboardBackend();
 
-        setClipboard(expectedClipboard);
+        setClipboardBackend(expectedClipboardBackend);
 
-        Clipboard actualClipboard = getClipboard();
+        ClipboardBackend actualClipboardBackend = getClipboardBackend();
 
-        assertEquals(expectedClipboard, actualClipboard);
+        assertEquals(expectedClipboardBackend, actualClipboardBackend);
     }
 
     @Test
@@ -63,4 +72,72 @@ class ClipboardManagerTest {
 
         assertEquals(expectedText, actualText);
     }
+
+    @Test
+    void setClipboardText_skipTextThatIsAlreadyOnClipboard() {
+        AtomicInteger setTextCount = new AtomicInteger();
+        InMemoryClipboardBackend inMemoryClipboardBackend = new InMemoryClipboardBackend();
+        setClipboardBackend(
+            new ClipboardBackend() {
+                @Override
+                @Nullable public String getText() {
+                    return inMemoryClipboardBackend.getText();
+                }
+
+                @Override
+                public void setText(String text) {
+                    setTextCount.incrementAndGet();
+                    inMemoryClipboardBackend.setText(text);
+                }
+
+                @Override
+                public String getName() {
+                    return "counting";
+                }
+            }
+        );
+
+        setClipboardText("scan_0043.png");
+        setClipboardText("scan_0043.png");
+        setClipboardText("scan_0044.png");
+
+        assertEquals(2, setTextCount.get());
+    }
+
+    @Test
+    void createClipboardBackend_headless() {
+        assumeTrue(GraphicsEnvironment.isHeadless());
+
+        assertEquals("memory", createClipboardBackend().getName());
+    }
+
+    @Test
+    void createClipboardBackend_configuredBackend() {
+        System.setProperty("clipboard_incrementor.clipboard.backend", "stdout");
+
+        try {
+            assertEquals("stdout", createClipboardBackend().getName());
+        } finally {
+            System.clearProperty("clipboard_incrementor.clipboard.backend");
+        }
+    }
+
+    @Test
+    void redirectStatusOutput_stdoutBackend() {
+        PrintStream standardOutput = System.out;
+        ByteArrayOutputStream clipboardOutput = new ByteArrayOutputStream();
+        System.setProperty("clipboard_incrementor.clipboard.backend", "stdout");
+        setClipboardBackend(new StdoutClipboardBackend(new PrintStream(clipboardOutput)));
+
+        try {
+            redirectStatusOutput();
+            setClipboardText("test.txt");
+
+            assertSame(System.err, System.out);
+            assertEquals("test.txt" + System.lineSeparator(), clipboardOutput.toString());
+        } finally {
+            System.setOut(standardOutput);
+            System.clearProperty("clipboard_incrementor.clipboard.backend");
+        }
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class ClipboardWriterTest {
+
+    /**
+     * Waits for the retries to happen before closing, because a closed writer stops retrying.
+     */
+    private static void awaitAttemptCount(AtomicInteger attemptCount, int expectedAttemptCount)
+        throws InterruptedException {
+        long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while (attemptCount.get() < expectedAttemptCount && System.nanoTime() - deadlineNanos < 0) Thread.sleep(1);
+    }
+
+    @Test
+    void submit_writeOnlyLatestTextOfBurst() {
+        List<String> writtenTexts = new CopyOnWriteArrayList<>();
+        ClipboardWriter clipboardWriter = new ClipboardWriter(writtenTexts::add, 200, 1, 1, 1);
+
+        for (int i = 1; i <= 100; i++) clipboardWriter.submit("scan_" + i + ".png");
+
+        clipboardWriter.close(1000);
+
+        assertEquals(List.of("scan_100.png"), writtenTexts);
+    }
+
+    @Test
+    void submit_retryFailedWrite() throws InterruptedException {
+        List<String> writtenTexts = new CopyOnWriteArrayList<>();
+        AtomicInteger attemptCount = new AtomicInteger();
+        ClipboardWriter clipboardWriter = new ClipboardWriter(
+            clipboardText -> {
+                if (attemptCount.incrementAndGet() < 3) throw new IllegalStateException("Clipboard is busy");
+
+                writtenTexts.add(clipboardText);
+            },
+            0,
+            1,
+            10,
+            5
+        );
+
+        clipboardWriter.submit("scan_2.png");
+        awaitAttemptCount(attemptCount, 3);
+        clipboardWriter.close(1000);
+
+        assertEquals(3, attemptCount.get());
+        assertEquals(List.of("scan_2.png"), writtenTexts);
+    }
+
+    @Test
+    void submit_keepWritingAfterUnexpectedException() throws InterruptedException {
+        List<String> writtenTexts = new CopyOnWriteArrayList<>();
+        CountDownLatch failedLatch = new CountDownLatch(1);
+        ClipboardWriter clipboardWriter = new ClipboardWriter(
+            clipboardText -> {
+                if (failedLatch.getCount() > 0) {
+                    failedLatch.countDown();
+                    throw new UnsupportedOperationException("No display");
+                }
+
+                writtenTexts.add(clipboardText);
+            },
+            0,
+            1,
+            1,
+            4
+        );
+
+        clipboardWriter.submit("scan_1.png");
+
+        assertTrue(failedLatch.await(5, TimeUnit.SECONDS));
+
+        clipboardWriter.submit("scan_2.png");
+        clipboardWriter.close(1000);
+
+        assertEquals(List.of("scan_2.png"), writtenTexts);
+    }
+
+    @Test
+    void close_stopRetrying() throws InterruptedException {
+        AtomicInteger attemptCount = new AtomicInteger();
+        CountDownLatch attemptedLatch = new CountDownLatch(1);
+        ClipboardWriter clipboardWriter = new ClipboardWriter(
+            clipboardText -> {
+                attemptCount.incrementAndGet();
+                attemptedLatch.countDown();
+                throw new IllegalStateException("Clipboard is busy");
+            },
+            0,
+            10_000,
+            10_000,
+            100
+        );
+
+        clipboardWriter.submit("scan_2.png");
+
+        assertTrue(attemptedLatch.await(5, TimeUnit.SECONDS));
+
+        long startNanos = System.nanoTime();
+        clipboardWriter.close(5000);
+
+        assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, attemptCount.get());
+    }
+
+    @Test
+    void submit_giveUpAfterMaxAttempts() throws InterruptedException {
+        AtomicInteger attemptCount = new AtomicInteger();
+        ClipboardWriter clipboardWriter = new ClipboardWriter(
+            clipboardText -> {
+                attemptCount.incrementAndGet();
+                throw new IllegalStateException("Clipboard is busy");
+            },
+            0,
+            1,
+            1,
+            4
+        );
+
+        clipboardWriter.submit("scan_2.png");
+        awaitAttemptCount(attemptCount, 4);
+        clipboardWriter.close(1000);
+
+        assertEquals(4, attemptCount.get());
+    }
+
+    @Test
+    void submit_closedWriter_throwsIllegalStateException() {
+        ClipboardWriter clipboardWriter = new ClipboardWriter(clipboardText -> {}, 0, 1, 1, 1);
+        clipboardWriter.close(1000);
+
+        assertThrows(IllegalStateException.class, () -> clipboardWriter.submit("scan_2.png"));
+    }
+}
@@ -19,15 +19,24 @@
 
 package nycto.clipboard_incrementor.manager;
 
+import static nycto.clipboard_incrementor.manager.DirectoryManager.changeDirectory;
 import static nycto.clipboard_incrementor.manager.DirectoryManager.getWatchedDirectoryPath;
 import static nycto.clipboard_incrementor.manager.DirectoryManager.setWatchedDirectoryPath;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import nycto.clipboard_incrementor.command.CommandResult;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class DirectoryManagerTest {
 
+    @TempDir
+    Path tempDirectoryPath;
+
     @Test
     void setAndGetDirectoryPath_test() {
         Path expectedPath = Path.of("C:\\testUser\\testName\\testDir");
@@ -38,4 +47,19 @@ class DirectoryManagerTest {
 
         assertEquals(expectedPath, actualPath);
     }
+
+    @Test
+    void changeDirectory_restoresPreviousDirectoryWhenNewDirectoryCannotBeWatched() throws IOException {
+        Path previousDirectoryPath = Files.createDirectory(tempDirectoryPath.resolve("previous"));
+        Path filePath = Files.createFile(tempDirectoryPath.resolve("file.txt"));
+
+        setWatchedDirectoryPath(previousDirectoryPath);
+
+        CommandResult commandResult = changeDirectory(filePath);
+
+        assertFalse(commandResult.succeeded());
+        assertEquals(previousDirectoryPath, getWatchedDirectoryPath());
+
+        setWatchedDirectoryPath(null);
+    }
 }
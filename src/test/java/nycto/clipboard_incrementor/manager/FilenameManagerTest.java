@@ -115,6 +115,19 @@ class FilenameManagerTest {
         assertEquals("1", incrementLastNumberInFilename("0"));
     }
 
+    @Test
+    void incrementLastNumberInFilename_handleNumbersLongerThanLong() {
+        assertEquals("scan_99999999999999999999999", incrementLastNumberInFilename("scan_99999999999999999999998"));
+        assertEquals("scan_100000000000000000000000", incrementLastNumberInFilename("scan_99999999999999999999999"));
+        assertEquals("0000000000000000000000000001", incrementLastNumberInFilename("0000000000000000000000000000"));
+    }
+
+    @Test
+    void incrementLastNumberInFilename_onlyIncrementLastNumber() {
+        assertEquals("2024-05-09 photo 10", incrementLastNumberInFilename("2024-05-09 photo 9"));
+        assertEquals("v9 (100) final", incrementLastNumberInFilename("v9 (99) final"));
+    }
+
     @Test
     void removeFileExtension_handleNoFileExtension() {
         assertEquals("grghszzertgh", removeFileExtension("grghszzertgh", true));
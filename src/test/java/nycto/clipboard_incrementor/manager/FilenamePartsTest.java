@@ -0,0 +1,77 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FilenamePartsTest {
+
+    @Test
+    void parse_numberAndExtensions() {
+        FilenameParts filenameParts = FilenameParts.parse("scan_0042_final.tar.gz");
+
+        assertEquals("scan_", filenameParts.getPrefix());
+        assertEquals("_final", filenameParts.getSuffix());
+        assertEquals(5, filenameParts.getNumberStart());
+        assertEquals(9, filenameParts.getNumberEnd());
+        assertEquals(4, filenameParts.getDigitCount());
+        assertEquals(2, filenameParts.getLeadingZeroCount());
+        assertEquals(42, filenameParts.getNumber());
+        assertEquals("scan_0042_final", filenameParts.getNameWithoutExtensions());
+        assertEquals(List.of("tar", "gz"), filenameParts.getExtensions());
+    }
+
+    @Test
+    void parse_lastNumberBeforeExtensions() {
+        FilenameParts filenameParts = FilenameParts.parse("take 3 of 12.v2.wav");
+
+        assertEquals("take 3 of ", filenameParts.getPrefix());
+        assertEquals(12, filenameParts.getNumber());
+        assertEquals(List.of("v2", "wav"), filenameParts.getExtensions());
+    }
+
+    @Test
+    void parse_noNumber() {
+        FilenameParts filenameParts = FilenameParts.parse("banner-icon.png");
+
+        assertFalse(filenameParts.hasNumber());
+        assertEquals("banner-icon", filenameParts.getPrefix());
+        assertEquals("", filenameParts.getSuffix());
+    }
+
+    @Test
+    void parse_onlyZeros() {
+        assertEquals(2, FilenameParts.parse("000.png").getLeadingZeroCount());
+        assertEquals(0, FilenameParts.parse("0.png").getLeadingZeroCount());
+        assertEquals(0, FilenameParts.parse("000.png").getNumber());
+    }
+
+    @Test
+    void parse_dotfile() {
+        FilenameParts filenameParts = FilenameParts.parse(".config2");
+
+        assertEquals(List.of(), filenameParts.getExtensions());
+        assertEquals(".config2", filenameParts.getNameWithoutExtensions());
+        assertEquals(2, filenameParts.getNumber());
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static nycto.clipboard_incrementor.manager.FilenameManager.computeNewFilename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FilenameSequenceTest {
+
+    /**
+     * Applies the single-step increment again and again, which the sequence must match
+     */
+    private static List<String> createNewFilenames(String filename, int count) {
+        List<String> filenames = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            filename = computeNewFilename(filename);
+            filenames.add(filename);
+        }
+
+        return filenames;
+    }
+
+    @Test
+    void stream_matchRepeatedCreateNewFilename() {
+        for (String filename : List.of("img_5.jpg", "some-song-000999.mp3", "0000000.png", "9", "a9b99.tar.gz")) {
+            assertEquals(createNewFilenames(filename, 2000), FilenameSequence.stream(filename).limit(2000).toList());
+        }
+    }
+
+    @Test
+    void stream_filenameWithoutNumber() {
+        List<String> expectedFilenames = List.of("notes (1)", "notes (2)", "notes (3)");
+
+        assertEquals(expectedFilenames, FilenameSequence.stream("notes.txt").limit(3).toList());
+    }
+
+    @Test
+    void next_growNumber() {
+        FilenameSequence filenameSequence = new FilenameSequence("scan_98");
+
+        assertEquals("scan_99", filenameSequence.next());
+        assertEquals("scan_100", filenameSequence.next());
+        assertEquals("scan_101", filenameSequence.next());
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+class NamingTemplateTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 15);
+
+    @Test
+    void forDirectory_readDirectoryTemplateFromConfigFile() throws IOException {
+        String config = String.join(
+            System.lineSeparator(),
+            "naming.template=number=first",
+            "naming.template.1.directory=/home/me/Scans",
+            "naming.template.1.rule=step=10",
+            "naming.template.2.directory=C:\\\\Users\\\\me\\\\Pictures",
+            "naming.template.2.rule=pattern=IMG_(\\\\d{8})_(\\\\d+);\\",
+            "    group=2"
+        );
+
+        try {
+            ConfigManager.setProperties(ConfigManager.loadProperties(new StringReader(config)));
+
+            assertEquals("scan_20", NamingTemplate.forDirectory(Path.of("/home/me/Scans")).apply("scan_10.png", TODAY));
+            assertEquals(
+                "IMG_20240101_8",
+                NamingTemplate.forDirectory(Path.of("C:\\Users\\me\\Pictures")).apply("IMG_20240101_7.jpg", TODAY)
+            );
+            assertEquals("take_2_v3", NamingTemplate.forDirectory(Path.of("/home/me/Other")).apply("take_1_v3", TODAY));
+        } finally {
+            ConfigManager.setProperties(ConfigManager.loadProperties());
+        }
+    }
+
+    @Test
+    void apply_incrementFirstNumber() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("number=first");
+
+        assertEquals("take_010_v3", namingTemplate.apply("take_009_v3.wav", TODAY));
+    }
+
+    @Test
+    void apply_incrementNumberAtPosition() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("number=2");
+
+        assertEquals("s01e10_part3", namingTemplate.apply("s01e09_part3.mkv", TODAY));
+        assertEquals("s01 (1)", namingTemplate.apply("s01.mkv", TODAY));
+    }
+
+    @Test
+    void apply_stepAndWidth() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("step=10; width=5");
+
+        assertEquals("export_00100", namingTemplate.apply("export_90.png", TODAY));
+        assertEquals("export_123456", namingTemplate.apply("export_123446.png", TODAY));
+    }
+
+    @Test
+    void apply_keepWidthWhenNumberOverflows() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("step=5");
+
+        assertEquals("frame_0100", namingTemplate.apply("frame_0095.tif", TODAY));
+        assertEquals("frame_100000000000000000004", namingTemplate.apply("frame_99999999999999999999.tif", TODAY));
+    }
+
+    @Test
+    void apply_patternGroup() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("pattern=^(\\d+)-(\\d+)-final;group=1");
+
+        assertEquals("13-7-final_v2", namingTemplate.apply("12-7-final_v2.pdf", TODAY));
+        assertEquals("draft_v2 (1)", namingTemplate.apply("draft_v2.pdf", TODAY));
+    }
+
+    @Test
+    void apply_fallback() {
+        NamingTemplate namingTemplate = NamingTemplate.compile("fallback=_001");
+
+        assertEquals("notes_001", namingTemplate.apply("notes.txt", TODAY));
+    }
+
+    @Test
+    void apply_dateGroup_sameDay() {
+        NamingTemplate namingTemplate = NamingTemplate.compile(
+            "pattern=IMG_(\\d{8})_(\\d+);group=2;date-group=1;date-format=yyyyMMdd"
+        );
+
+        assertEquals("IMG_20240315_0008", namingTemplate.apply("IMG_20240315_0007.jpg", TODAY));
+    }
+
+    @Test
+    void apply_dateGroup_newDay() {
+        NamingTemplate namingTemplate = NamingTemplate.compile(
+            "pattern=(\\d+)_(\\d{4}-\\d{2}-\\d{2});group=1;date-group=2;date-format=yyyy-MM-dd"
+        );
+
+        assertEquals("001_2024-03-15", namingTemplate.apply("042_2024-03-14.png", TODAY));
+    }
+
+    @Test
+    void compile_cacheCompiledTemplates() {
+        assertSame(NamingTemplate.compile("number=first;step=2"), NamingTemplate.compile("number=first;step=2"));
+        assertSame(NamingTemplate.DEFAULT, NamingTemplate.compile(""));
+    }
+
+    @Test
+    void incrementsLastNumberByOne() {
+        assertTrue(NamingTemplate.DEFAULT.incrementsLastNumberByOne());
+        assertTrue(NamingTemplate.compile("width=4").incrementsLastNumberByOne());
+        assertFalse(NamingTemplate.compile("step=10").incrementsLastNumberByOne());
+        assertFalse(NamingTemplate.compile("number=first").incrementsLastNumberByOne());
+    }
+
+    @Test
+    void compile_invalidTemplate_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> NamingTemplate.compile("step=0"));
+        assertThrows(IllegalArgumentException.class, () -> NamingTemplate.compile("colour=red"));
+        assertThrows(IllegalArgumentException.class, () -> NamingTemplate.compile("pattern=(unclosed"));
+        assertThrows(IllegalArgumentException.class, () -> NamingTemplate.compile("pattern=(\\d+);group=2"));
+        assertThrows(IllegalArgumentException.class, () -> NamingTemplate.compile("pattern=(\\d+);date-group=1"));
+    }
+}
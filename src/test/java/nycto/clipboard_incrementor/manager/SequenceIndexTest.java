@@ -0,0 +1,99 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.manager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SequenceIndexTest {
+
+    @Test
+    void findFreeFilename_numberNotInUse() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        sequenceIndex.add("scan_0041.png");
+
+        assertEquals("scan_0042", sequenceIndex.findFreeFilename("scan_0042"));
+    }
+
+    @Test
+    void findFreeFilename_skipNumbersInUse() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+
+        for (int number = 41; number <= 45; number++) sequenceIndex.add("scan_00" + number + ".png");
+        sequenceIndex.add("scan_0047.png");
+
+        assertEquals("scan_0046", sequenceIndex.findFreeFilename("scan_0042"));
+    }
+
+    @Test
+    void findFreeFilename_keepStemsApart() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        sequenceIndex.add("scan_0042.png");
+        sequenceIndex.add("photo_0043.png");
+        sequenceIndex.add("scan_0043 (edited).png");
+
+        assertEquals("scan_0043", sequenceIndex.findFreeFilename("scan_0042"));
+        assertEquals("photo_0042", sequenceIndex.findFreeFilename("photo_0042"));
+    }
+
+    @Test
+    void findFreeFilename_growNumberWidth() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        sequenceIndex.add("img_98.jpg");
+        sequenceIndex.add("img_99.jpg");
+
+        assertEquals("img_100", sequenceIndex.findFreeFilename("img_98"));
+    }
+
+    @Test
+    void findFreeFilename_filenameWithoutNumber() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        sequenceIndex.add("notes.txt");
+        sequenceIndex.add("notes (1).txt");
+
+        assertEquals("notes (2)", sequenceIndex.findFreeFilename("notes (1)"));
+    }
+
+    @Test
+    void remove_freeNumber() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+
+        for (int number = 1; number <= 5; number++) sequenceIndex.add("scan_" + number + ".png");
+        sequenceIndex.remove("scan_3.png");
+
+        assertEquals("scan_3", sequenceIndex.findFreeFilename("scan_2"));
+        assertEquals("scan_6", sequenceIndex.findFreeFilename("scan_4"));
+    }
+
+    @Test
+    void remove_keepNumberUsedByOtherExtension() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        sequenceIndex.add("scan_3.png");
+        sequenceIndex.add("scan_3.jpg");
+        sequenceIndex.remove("scan_3.png");
+
+        assertEquals("scan_4", sequenceIndex.findFreeFilename("scan_3"));
+
+        sequenceIndex.remove("scan_3.jpg");
+
+        assertEquals("scan_3", sequenceIndex.findFreeFilename("scan_3"));
+    }
+}
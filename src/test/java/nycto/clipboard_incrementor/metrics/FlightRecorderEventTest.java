@@ -0,0 +1,64 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import static nycto.clipboard_incrementor.manager.FilenameManager.createNewFilename;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FlightRecorderEventTest {
+
+    private static final String FILENAME_COMPUTATION_EVENT_NAME = "nycto.clipboard_incrementor.FilenameComputation";
+
+    @TempDir
+    Path tempDirectoryPath;
+
+    @Test
+    void createNewFilename_recordFilenameComputationEvent() throws IOException {
+        Path recordingPath = tempDirectoryPath.resolve("recording.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(FilenameComputationEvent.class).withoutThreshold();
+            recording.start();
+
+            createNewFilename("scan_0042.png");
+
+            recording.stop();
+            recording.dump(recordingPath);
+        }
+
+        List<RecordedEvent> recordedEvents = RecordingFile.readAllEvents(recordingPath)
+            .stream()
+            .filter(recordedEvent -> recordedEvent.getEventType().getName().equals(FILENAME_COMPUTATION_EVENT_NAME))
+            .toList();
+
+        assertEquals(1, recordedEvents.size());
+        assertEquals("scan_0042.png", recordedEvents.get(0).getString("filename"));
+        assertEquals("scan_0043", recordedEvents.get(0).getString("newFilename"));
+    }
+}
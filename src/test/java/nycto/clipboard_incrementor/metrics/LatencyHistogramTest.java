@@ -0,0 +1,63 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    @Test
+    void getPercentileMicros_emptyHistogram() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        assertEquals(0, latencyHistogram.getCount());
+        assertEquals(0, latencyHistogram.getPercentileMicros(99));
+        assertEquals(0, latencyHistogram.getMeanMicros());
+    }
+
+    @Test
+    void getPercentileMicros_withinFactorOfTwo() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        for (int i = 0; i < 99; i++) latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        long p50Micros = latencyHistogram.getPercentileMicros(50);
+        long p100Micros = latencyHistogram.getPercentileMicros(100);
+
+        assertEquals(100, latencyHistogram.getCount());
+        assertTrue(p50Micros >= 100 && p50Micros < 200, "p50 was " + p50Micros);
+        assertEquals(50_000, p100Micros);
+        assertEquals(50_000, latencyHistogram.getMaxMicros());
+    }
+
+    @Test
+    void record_negativeDuration() {
+        LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+        latencyHistogram.record(-1);
+
+        assertEquals(1, latencyHistogram.getCount());
+        assertEquals(0, latencyHistogram.getMaxMicros());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import nycto.clipboard_incrementor.manager.SequenceIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class DirectorySnapshotTest {
+
+    @TempDir
+    Path tempDirectoryPath;
+
+    private Path createFile(String filename, long modifiedMillis) throws IOException {
+        Path filePath = Files.createFile(tempDirectoryPath.resolve(filename));
+        Files.setLastModifiedTime(filePath, FileTime.fromMillis(modifiedMillis));
+
+        return filePath;
+    }
+
+    @Test
+    void load_test() throws IOException {
+        createFile("scan_0001.png", 1_000);
+        createFile("scan_0002.png", 2_000);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.contains("scan_0001.png"));
+        assertTrue(snapshot.contains("scan_0002.png"));
+    }
+
+    @Test
+    void reconcile_returnNewEntriesFromOldestToNewest() throws IOException {
+        createFile("scan_0001.png", 1_000);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+
+        Path newestFilePath = createFile("scan_0003.png", 3_000);
+        Path oldestFilePath = createFile("scan_0002.png", 2_000);
+
+        assertEquals(List.of(oldestFilePath, newestFilePath), snapshot.reconcile(tempDirectoryPath));
+        assertEquals(3, snapshot.size());
+    }
+
+    @Test
+    void reconcile_ignoreEntriesAddedFromEvents() throws IOException {
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+
+        createFile("scan_0001.png", 1_000);
+        snapshot.add("scan_0001.png");
+
+        assertEquals(List.of(), snapshot.reconcile(tempDirectoryPath));
+    }
+
+    @Test
+    void reconcile_removeDeletedEntries() throws IOException {
+        Path filePath = createFile("scan_0001.png", 1_000);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+
+        Files.delete(filePath);
+
+        assertEquals(List.of(), snapshot.reconcile(tempDirectoryPath));
+        assertFalse(snapshot.contains("scan_0001.png"));
+    }
+
+    @Test
+    void reconcile_skipUnmodifiedDirectory() throws IOException {
+        createFile("scan_0001.png", 1_000);
+        Files.setLastModifiedTime(tempDirectoryPath, FileTime.fromMillis(10_000));
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+
+        /* Remove the entry from the snapshot only, the listing is skipped so it is not found again */
+        snapshot.remove("scan_0001.png");
+
+        assertEquals(List.of(), snapshot.reconcile(tempDirectoryPath));
+        assertFalse(snapshot.contains("scan_0001.png"));
+    }
+
+    @Test
+    void remove_freeNumberInSequenceIndex() {
+        SequenceIndex sequenceIndex = new SequenceIndex();
+        DirectorySnapshot snapshot = new DirectorySnapshot(sequenceIndex);
+
+        for (int i = 1; i <= 5; i++) snapshot.add("scan_" + i + ".png");
+
+        snapshot.remove("scan_5.png");
+
+        assertEquals("scan_5", sequenceIndex.findFreeFilename("scan_4"));
+        assertFalse(snapshot.contains("scan_5.png"));
+    }
+}
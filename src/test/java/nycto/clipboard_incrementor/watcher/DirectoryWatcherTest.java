@@ -19,10 +19,144 @@
 
 package nycto.clipboard_incrementor.watcher;
 
+import static nycto.clipboard_incrementor.manager.ClipboardManager.getClipboardText;
+import static nycto.clipboard_incrementor.watcher.DirectoryWatcher.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class DirectoryWatcherTest {
 
+    @TempDir
+    Path tempDirectoryPath;
+
+    @AfterEach
+    void tearDown() {
+        closeWatchService();
+    }
+
     @Test
     void call() {}
+
+    @Test
+    void watchDirectory_watchMultipleDirectories() throws IOException {
+        Path firstDirectoryPath = Files.createDirectory(tempDirectoryPath.resolve("first"));
+        Path secondDirectoryPath = Files.createDirectory(tempDirectoryPath.resolve("second"));
+
+        assertTrue(watchDirectory(firstDirectoryPath));
+        assertTrue(watchDirectory(secondDirectoryPath));
+
+        List<Path> watchedDirectoryPaths = getWatchedDirectoryPaths();
+
+        assertEquals(2, watchedDirectoryPaths.size());
+        assertTrue(watchedDirectoryPaths.contains(firstDirectoryPath));
+        assertTrue(watchedDirectoryPaths.contains(secondDirectoryPath));
+    }
+
+    @Test
+    void watchDirectory_ignoreAlreadyWatchedDirectory() throws IOException {
+        assertTrue(watchDirectory(tempDirectoryPath));
+        assertFalse(watchDirectory(tempDirectoryPath.resolve(".")));
+        assertEquals(1, getWatchedDirectoryPaths().size());
+    }
+
+    @Test
+    void unwatchDirectory_test() throws IOException {
+        watchDirectory(tempDirectoryPath);
+
+        assertTrue(unwatchDirectory(tempDirectoryPath));
+        assertFalse(isDirectoryWatched(tempDirectoryPath));
+        assertFalse(unwatchDirectory(tempDirectoryPath));
+    }
+
+    @Test
+    void watchDirectory_registerSubdirectoriesIfRecursive() throws IOException {
+        Files.createDirectories(tempDirectoryPath.resolve("a").resolve("b"));
+        Files.createDirectories(tempDirectoryPath.resolve("c"));
+        Files.createFile(tempDirectoryPath.resolve("a").resolve("file.txt"));
+
+        assertTrue(watchDirectory(tempDirectoryPath, true));
+
+        assertEquals(List.of(tempDirectoryPath), getWatchedDirectoryPaths());
+        assertEquals(4, getRegisteredDirectoryCount());
+        assertTrue(isDirectoryWatched(tempDirectoryPath.resolve("a").resolve("b")));
+    }
+
+    @Test
+    void watchDirectory_ignoreSubdirectoriesIfNotRecursive() throws IOException {
+        Files.createDirectories(tempDirectoryPath.resolve("a").resolve("b"));
+
+        assertTrue(watchDirectory(tempDirectoryPath, false));
+
+        assertEquals(1, getRegisteredDirectoryCount());
+        assertFalse(isDirectoryWatched(tempDirectoryPath.resolve("a")));
+    }
+
+    @Test
+    void unwatchDirectory_unregisterSubdirectories() throws IOException {
+        Files.createDirectories(tempDirectoryPath.resolve("a").resolve("b"));
+
+        watchDirectory(tempDirectoryPath, true);
+
+        assertTrue(unwatchDirectory(tempDirectoryPath.resolve("a")));
+        assertEquals(1, getRegisteredDirectoryCount());
+        assertFalse(isDirectoryWatched(tempDirectoryPath.resolve("a").resolve("b")));
+
+        assertTrue(unwatchDirectory(tempDirectoryPath));
+        assertEquals(0, getRegisteredDirectoryCount());
+    }
+
+    @Test
+    void watchDirectory_pollIfPollingIsForced() throws IOException {
+        System.setProperty("clipboard_incrementor.watcher.engine", "polling");
+
+        try {
+            assertTrue(watchDirectory(tempDirectoryPath));
+
+            List<WatchService> watchServices = getWatchServices();
+
+            assertEquals(1, watchServices.size());
+            assertInstanceOf(PollingWatchService.class, watchServices.get(0));
+        } finally {
+            System.clearProperty("clipboard_incrementor.watcher.engine");
+        }
+    }
+
+    @Test
+    void call_reuseNumberOfDeletedFile() throws IOException, InterruptedException {
+        System.setProperty("clipboard_incrementor.clipboard.backend", "memory");
+
+        for (String filename : List.of("scan_1.png", "scan_2.png", "scan_4.png", "scan_5.png")) {
+            Files.createFile(tempDirectoryPath.resolve(filename));
+        }
+
+        assertTrue(watchDirectory(tempDirectoryPath));
+
+        Thread watcherThread = Thread.ofVirtual().start(() -> new DirectoryWatcher(getWatchServices().get(0)).call());
+
+        try {
+            Files.delete(tempDirectoryPath.resolve("scan_5.png"));
+            /* Let the deletion be handled before the next file is created */
+            Thread.sleep(500);
+            Files.createFile(tempDirectoryPath.resolve("scan_3.png"));
+
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (!"scan_5".equals(getClipboardText()) && System.nanoTime() - deadlineNanos < 0) Thread.sleep(20);
+
+            assertEquals("scan_5", getClipboardText());
+        } finally {
+            closeWatchService();
+            watcherThread.join(5000);
+            System.clearProperty("clipboard_incrementor.clipboard.backend");
+        }
+    }
 }
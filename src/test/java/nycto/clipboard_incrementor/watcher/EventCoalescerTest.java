@@ -0,0 +1,77 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+
+class EventCoalescerTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void tryHandle_suppressDuplicateWithinWindow() {
+        EventCoalescer eventCoalescer = new EventCoalescer(500);
+        Path filePath = Path.of("downloads", "scan_0042.png");
+
+        assertTrue(eventCoalescer.tryHandle(filePath, 0));
+        assertFalse(eventCoalescer.tryHandle(filePath, 10 * MILLIS));
+        assertFalse(eventCoalescer.tryHandle(filePath, 499 * MILLIS));
+    }
+
+    @Test
+    void tryHandle_handleAgainAfterWindow() {
+        EventCoalescer eventCoalescer = new EventCoalescer(500);
+        Path filePath = Path.of("downloads", "scan_0042.png");
+
+        assertTrue(eventCoalescer.tryHandle(filePath, 0));
+        assertTrue(eventCoalescer.tryHandle(filePath, 500 * MILLIS));
+    }
+
+    @Test
+    void tryHandle_handleDifferentFiles() {
+        EventCoalescer eventCoalescer = new EventCoalescer(500);
+
+        assertTrue(eventCoalescer.tryHandle(Path.of("scan_0042.png"), 0));
+        assertTrue(eventCoalescer.tryHandle(Path.of("scan_0043.png"), 0));
+    }
+
+    @Test
+    void tryHandle_evictExpiredFiles() {
+        EventCoalescer eventCoalescer = new EventCoalescer(500);
+
+        eventCoalescer.tryHandle(Path.of("scan_0042.png"), 0);
+        eventCoalescer.tryHandle(Path.of("scan_0043.png"), 100 * MILLIS);
+        eventCoalescer.tryHandle(Path.of("scan_0044.png"), 550 * MILLIS);
+
+        assertEquals(2, eventCoalescer.size());
+    }
+
+    @Test
+    void tryHandle_neverSuppressWithoutWindow() {
+        EventCoalescer eventCoalescer = new EventCoalescer(0);
+        Path filePath = Path.of("scan_0042.png");
+
+        assertTrue(eventCoalescer.tryHandle(filePath, 0));
+        assertTrue(eventCoalescer.tryHandle(filePath, 0));
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.Watchable;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import nycto.clipboard_incrementor.manager.NamingTemplate;
+import org.junit.jupiter.api.Test;
+
+class EventQueueTest {
+
+    private static final WatchedDirectory WATCHED_DIRECTORY = new WatchedDirectory(
+        Path.of("watched"),
+        Path.of("watched"),
+        false,
+        NamingTemplate.DEFAULT
+    );
+
+    private static EventQueue.WatchBatch createBatch(WatchKey watchKey, String... filenames) {
+        List<WatchEvent<?>> watchEvents = Arrays.stream(filenames)
+            .<WatchEvent<?>>map(filename -> new TestWatchEvent(Path.of(filename)))
+            .toList();
+
+        return new EventQueue.WatchBatch(watchKey, WATCHED_DIRECTORY, watchEvents, System.nanoTime(), true, false);
+    }
+
+    private static List<Path> getContexts(EventQueue.WatchBatch batch) {
+        return batch.watchEvents().stream().map(watchEvent -> (Path) watchEvent.context()).toList();
+    }
+
+    @Test
+    void take_returnBatchesInOrder() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(4, EventQueue.OverflowPolicy.BLOCK);
+        TestWatchKey watchKey = new TestWatchKey();
+
+        eventQueue.put(createBatch(watchKey, "Image_001.png"));
+        eventQueue.put(createBatch(watchKey, "Image_002.png"));
+
+        assertEquals(2, eventQueue.size());
+        assertEquals(List.of(Path.of("Image_001.png")), getContexts(eventQueue.take()));
+        assertEquals(List.of(Path.of("Image_002.png")), getContexts(eventQueue.take()));
+        assertEquals(0, eventQueue.size());
+    }
+
+    @Test
+    void put_dropOldest_rescanDroppedDirectoryFirst() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(2, EventQueue.OverflowPolicy.DROP_OLDEST);
+        TestWatchKey droppedWatchKey = new TestWatchKey();
+        TestWatchKey watchKey = new TestWatchKey();
+
+        eventQueue.put(createBatch(droppedWatchKey, "Image_001.png"));
+        eventQueue.put(createBatch(watchKey, "Image_002.png"));
+        eventQueue.put(createBatch(watchKey, "Image_003.png"));
+
+        EventQueue.WatchBatch rescan = eventQueue.take();
+
+        assertSame(droppedWatchKey, rescan.watchKey());
+        assertTrue(rescan.rescan());
+        assertEquals(List.of(Path.of("Image_002.png")), getContexts(eventQueue.take()));
+        assertEquals(List.of(Path.of("Image_003.png")), getContexts(eventQueue.take()));
+    }
+
+    @Test
+    void put_coalesce_mergeBatchesOfSameWatchKey() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(2, EventQueue.OverflowPolicy.COALESCE);
+        TestWatchKey watchKey = new TestWatchKey();
+        TestWatchKey otherWatchKey = new TestWatchKey();
+
+        eventQueue.put(createBatch(watchKey, "Image_001.png"));
+        eventQueue.put(createBatch(otherWatchKey, "Scan_001.png"));
+        eventQueue.put(createBatch(watchKey, "Image_002.png"));
+
+        assertEquals(2, eventQueue.size());
+        assertEquals(List.of(Path.of("Image_001.png"), Path.of("Image_002.png")), getContexts(eventQueue.take()));
+        assertEquals(List.of(Path.of("Scan_001.png")), getContexts(eventQueue.take()));
+    }
+
+    @Test
+    void put_coalesce_rescanWhenTooManyEvents() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(1, EventQueue.OverflowPolicy.COALESCE);
+        TestWatchKey watchKey = new TestWatchKey();
+        String[] filenames = new String[EventQueue.MAX_COALESCED_EVENT_COUNT];
+
+        Arrays.setAll(filenames, i -> "Image_" + i + ".png");
+        eventQueue.put(createBatch(watchKey, filenames));
+        eventQueue.put(createBatch(watchKey, "Image_last.png"));
+
+        EventQueue.WatchBatch batch = eventQueue.take();
+
+        assertTrue(batch.rescan());
+        assertTrue(batch.watchEvents().isEmpty());
+    }
+
+    @Test
+    void put_block_waitUntilThereIsRoom() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(1, EventQueue.OverflowPolicy.BLOCK);
+        TestWatchKey watchKey = new TestWatchKey();
+
+        eventQueue.put(createBatch(watchKey, "Image_001.png"));
+
+        Thread producerThread = Thread.ofVirtual().start(() -> {
+            try {
+                eventQueue.put(createBatch(watchKey, "Image_002.png"));
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        assertFalse(producerThread.join(Duration.ofMillis(100)));
+        assertEquals(List.of(Path.of("Image_001.png")), getContexts(eventQueue.take()));
+        assertTrue(producerThread.join(Duration.ofSeconds(5)));
+        assertEquals(List.of(Path.of("Image_002.png")), getContexts(eventQueue.take()));
+    }
+
+    @Test
+    void take_closed_returnNull() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(1, EventQueue.OverflowPolicy.BLOCK);
+
+        Thread consumerThread = Thread.ofVirtual().start(() -> {
+            try {
+                assertNull(eventQueue.take());
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        eventQueue.close();
+        eventQueue.put(createBatch(new TestWatchKey(), "Image_001.png"));
+
+        assertTrue(consumerThread.join(Duration.ofSeconds(5)));
+        assertNull(eventQueue.take());
+        assertEquals(0, eventQueue.size());
+    }
+
+    @Test
+    void take_closed_returnWaitingBatchesFirst() throws InterruptedException {
+        EventQueue eventQueue = new EventQueue(2, EventQueue.OverflowPolicy.DROP_OLDEST);
+        TestWatchKey droppedWatchKey = new TestWatchKey();
+        TestWatchKey watchKey = new TestWatchKey();
+
+        eventQueue.put(createBatch(droppedWatchKey, "Image_001.png"));
+        eventQueue.put(createBatch(watchKey, "Image_002.png"));
+        eventQueue.put(createBatch(watchKey, "Image_003.png"));
+        eventQueue.close();
+
+        assertTrue(eventQueue.take().rescan());
+        assertEquals(List.of(Path.of("Image_002.png")), getContexts(eventQueue.take()));
+        assertEquals(List.of(Path.of("Image_003.png")), getContexts(eventQueue.take()));
+        assertNull(eventQueue.take());
+    }
+
+    @Test
+    void parse_unknownPolicy_block() {
+        assertEquals(EventQueue.OverflowPolicy.DROP_OLDEST, EventQueue.OverflowPolicy.parse("drop-oldest"));
+        assertEquals(EventQueue.OverflowPolicy.COALESCE, EventQueue.OverflowPolicy.parse(" Coalesce "));
+        assertEquals(EventQueue.OverflowPolicy.BLOCK, EventQueue.OverflowPolicy.parse("unknown"));
+    }
+
+    private record TestWatchEvent(Path context) implements WatchEvent<Path> {
+        @Override
+        public Kind<Path> kind() {
+            return StandardWatchEventKinds.ENTRY_CREATE;
+        }
+
+        @Override
+        public int count() {
+            return 1;
+        }
+    }
+
+    private static final class TestWatchKey implements WatchKey {
+
+        @Override
+        public boolean isValid() {
+            return true;
+        }
+
+        @Override
+        public List<WatchEvent<?>> pollEvents() {
+            return List.of();
+        }
+
+        @Override
+        public boolean reset() {
+            return true;
+        }
+
+        @Override
+        public void cancel() {}
+
+        @Override
+        public Watchable watchable() {
+            return Path.of("watched");
+        }
+    }
+}
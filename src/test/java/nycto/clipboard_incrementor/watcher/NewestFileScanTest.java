@@ -0,0 +1,86 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NewestFileScanTest {
+
+    private static final TemporaryFileFilter TEMPORARY_FILE_FILTER = TemporaryFileFilter.compile(
+        TemporaryFileFilter.DEFAULT_PATTERNS
+    );
+
+    @TempDir
+    Path tempDirectoryPath;
+
+    private static Path createFile(Path directoryPath, String filename, long modifiedMillis) throws IOException {
+        Path filePath = Files.createFile(directoryPath.resolve(filename));
+        Files.setLastModifiedTime(filePath, FileTime.fromMillis(modifiedMillis));
+
+        return filePath;
+    }
+
+    private NewestFileScan.NewestFile scan(boolean recursive) {
+        return new NewestFileScan(tempDirectoryPath, recursive, TEMPORARY_FILE_FILTER).invoke();
+    }
+
+    @Test
+    void compute_findNewestFileInLargeDirectory() throws IOException {
+        for (int i = 0; i < NewestFileScan.ENTRIES_PER_TASK * 5; i++) {
+            createFile(tempDirectoryPath, "scan_" + i + ".png", 1_000_000L + i * 1000L);
+        }
+
+        Path newestFilePath = createFile(tempDirectoryPath, "scan_middle.png", 5_000_000_000L);
+
+        assertEquals(newestFilePath, scan(false).path());
+    }
+
+    @Test
+    void compute_skipTemporaryFilesAndDirectories() throws IOException {
+        Path newestFilePath = createFile(tempDirectoryPath, "scan_1.png", 1_000_000L);
+        createFile(tempDirectoryPath, "scan_2.png.crdownload", 2_000_000L);
+        Path subdirectoryPath = Files.createDirectory(tempDirectoryPath.resolve("nested"));
+        createFile(subdirectoryPath, "scan_3.png", 3_000_000L);
+        Files.setLastModifiedTime(subdirectoryPath, FileTime.fromMillis(4_000_000L));
+
+        assertEquals(newestFilePath, scan(false).path());
+    }
+
+    @Test
+    void compute_scanSubdirectoriesIfRecursive() throws IOException {
+        createFile(tempDirectoryPath, "scan_1.png", 1_000_000L);
+        Path subdirectoryPath = Files.createDirectories(tempDirectoryPath.resolve("a").resolve("b"));
+        Path newestFilePath = createFile(subdirectoryPath, "scan_2.png", 2_000_000L);
+
+        assertEquals(newestFilePath, scan(true).path());
+    }
+
+    @Test
+    void compute_emptyDirectory() {
+        assertNull(scan(true));
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PollingWatchServiceTest {
+
+    @TempDir
+    Path tempDirectoryPath;
+
+    private PollingWatchService pollingWatchService;
+
+    @BeforeEach
+    void setUp() {
+        pollingWatchService = new PollingWatchService(10, 80);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pollingWatchService.close();
+    }
+
+    @Test
+    void poll_signalCreatedEntries() throws IOException, InterruptedException {
+        WatchKey registeredWatchKey = pollingWatchService.register(
+            tempDirectoryPath,
+            StandardWatchEventKinds.ENTRY_CREATE
+        );
+
+        Files.createFile(tempDirectoryPath.resolve("scan_0042.png"));
+
+        WatchKey watchKey = pollingWatchService.poll(5, TimeUnit.SECONDS);
+
+        assertSame(registeredWatchKey, watchKey);
+
+        List<WatchEvent<?>> watchEvents = watchKey.pollEvents();
+
+        assertEquals(1, watchEvents.size());
+        assertEquals(StandardWatchEventKinds.ENTRY_CREATE, watchEvents.get(0).kind());
+        assertEquals(Path.of("scan_0042.png"), watchEvents.get(0).context());
+        assertTrue(watchKey.reset());
+    }
+
+    @Test
+    void poll_sharedSnapshot_waitUntilListedAndKeepSnapshotUpToDate() throws IOException, InterruptedException {
+        Files.createFile(tempDirectoryPath.resolve("scan_0041.png"));
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        pollingWatchService.register(tempDirectoryPath, snapshot, StandardWatchEventKinds.ENTRY_CREATE);
+
+        /* The existing file is not reported while the snapshot is not filled */
+        assertNull(pollingWatchService.poll(100, TimeUnit.MILLISECONDS));
+
+        snapshot.load(tempDirectoryPath);
+        Files.createFile(tempDirectoryPath.resolve("scan_0042.png"));
+
+        WatchKey watchKey = pollingWatchService.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(watchKey);
+
+        List<WatchEvent<?>> watchEvents = watchKey.pollEvents();
+
+        assertEquals(1, watchEvents.size());
+        assertEquals(Path.of("scan_0042.png"), watchEvents.get(0).context());
+        assertTrue(snapshot.contains("scan_0042.png"));
+    }
+
+    @Test
+    void poll_signalDeletedEntries() throws IOException, InterruptedException {
+        Path filePath = Files.createFile(tempDirectoryPath.resolve("scan_0042.png"));
+
+        pollingWatchService.register(
+            tempDirectoryPath,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE
+        );
+
+        Files.delete(filePath);
+
+        WatchKey watchKey = pollingWatchService.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(watchKey);
+
+        List<WatchEvent<?>> watchEvents = watchKey.pollEvents();
+
+        assertEquals(1, watchEvents.size());
+        assertEquals(StandardWatchEventKinds.ENTRY_DELETE, watchEvents.get(0).kind());
+    }
+
+    @Test
+    void poll_returnNullIfNothingChanged() throws IOException, InterruptedException {
+        pollingWatchService.register(tempDirectoryPath, StandardWatchEventKinds.ENTRY_CREATE);
+
+        assertNull(pollingWatchService.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void poll_increaseIntervalWhileIdle() throws IOException, InterruptedException {
+        WatchKey watchKey = pollingWatchService.register(tempDirectoryPath, StandardWatchEventKinds.ENTRY_CREATE);
+
+        pollingWatchService.poll(300, TimeUnit.MILLISECONDS);
+
+        assertEquals(80, pollingWatchService.getIntervalMillis(watchKey));
+
+        Files.createFile(tempDirectoryPath.resolve("scan_0042.png"));
+
+        assertNotNull(pollingWatchService.poll(5, TimeUnit.SECONDS));
+        assertEquals(10, pollingWatchService.getIntervalMillis(watchKey));
+    }
+
+    @Test
+    void poll_invalidateKeyOfDeletedDirectory() throws IOException, InterruptedException {
+        Path directoryPath = Files.createDirectory(tempDirectoryPath.resolve("scans"));
+
+        pollingWatchService.register(directoryPath, StandardWatchEventKinds.ENTRY_CREATE);
+
+        Files.delete(directoryPath);
+
+        WatchKey watchKey = pollingWatchService.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(watchKey);
+        assertFalse(watchKey.reset());
+    }
+
+    @Test
+    void take_throwIfClosed() {
+        pollingWatchService.close();
+
+        assertThrows(ClosedWatchServiceException.class, () -> pollingWatchService.take());
+    }
+}
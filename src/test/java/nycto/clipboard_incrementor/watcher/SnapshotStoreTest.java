@@ -0,0 +1,98 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotStoreTest {
+
+    private static final FileTime DIRECTORY_MODIFIED_TIME = FileTime.fromMillis(10_000);
+
+    @TempDir
+    Path tempDirectoryPath;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createFile(tempDirectoryPath.resolve("scan_0001.png"));
+        Files.createFile(tempDirectoryPath.resolve("scan_0002.png"));
+        Files.setLastModifiedTime(tempDirectoryPath, DIRECTORY_MODIFIED_TIME);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        snapshot.load(tempDirectoryPath);
+        SnapshotStore.save(tempDirectoryPath, snapshot);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SnapshotStore.delete(tempDirectoryPath);
+    }
+
+    @Test
+    void load_unmodifiedDirectory_skipListing() throws IOException {
+        /* Not modifying the directory time hides the new file, which shows that the directory was not listed */
+        Files.createFile(tempDirectoryPath.resolve("scan_0003.png"));
+        Files.setLastModifiedTime(tempDirectoryPath, DIRECTORY_MODIFIED_TIME);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        SnapshotStore.load(tempDirectoryPath, snapshot);
+
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.contains("scan_0001.png"));
+        assertTrue(snapshot.contains("scan_0002.png"));
+    }
+
+    @Test
+    void load_modifiedDirectory_readChanges() throws IOException {
+        Files.createFile(tempDirectoryPath.resolve("scan_0003.png"));
+        Files.delete(tempDirectoryPath.resolve("scan_0001.png"));
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        SnapshotStore.load(tempDirectoryPath, snapshot);
+
+        assertEquals(2, snapshot.size());
+        assertTrue(snapshot.contains("scan_0002.png"));
+        assertTrue(snapshot.contains("scan_0003.png"));
+    }
+
+    @Test
+    void load_corruptSnapshot_listDirectory() throws IOException {
+        Path snapshotFilePath = SnapshotStore.getSnapshotFilePath(tempDirectoryPath);
+        byte[] snapshotBytes = Files.readAllBytes(snapshotFilePath);
+        snapshotBytes[snapshotBytes.length / 2] ^= 1;
+        Files.write(snapshotFilePath, snapshotBytes);
+
+        Files.createFile(tempDirectoryPath.resolve("scan_0003.png"));
+        Files.setLastModifiedTime(tempDirectoryPath, DIRECTORY_MODIFIED_TIME);
+
+        DirectorySnapshot snapshot = new DirectorySnapshot();
+        SnapshotStore.load(tempDirectoryPath, snapshot);
+
+        assertEquals(3, snapshot.size());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Clipboard Incrementor
+ * Watches a folder for new files and increments the filename in the clipboard.
+ * Copyright (C) 2024 Jelle Van Goethem
+ *
+ * This program is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation, either version 3 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nycto.clipboard_incrementor.watcher;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TemporaryFileFilterTest {
+
+    private final TemporaryFileFilter defaultFilter = TemporaryFileFilter.compile(TemporaryFileFilter.DEFAULT_PATTERNS);
+
+    @Test
+    void matches_suffixPattern() {
+        assertTrue(defaultFilter.matches("scan_0042.png.crdownload"));
+        assertTrue(defaultFilter.matches("movie.mkv.part"));
+        assertTrue(defaultFilter.matches("report.tmp"));
+    }
+
+    @Test
+    void matches_prefixPattern() {
+        assertTrue(defaultFilter.matches("~$report.docx"));
+    }
+
+    @Test
+    void matches_prefixAndSuffixPattern() {
+        assertTrue(defaultFilter.matches(".~lock.report.odt#"));
+        assertFalse(defaultFilter.matches(".~lock.report.odt"));
+    }
+
+    @Test
+    void matches_ignoreCase() {
+        assertTrue(defaultFilter.matches("SCAN_0042.PNG.CRDOWNLOAD"));
+        assertTrue(defaultFilter.matches("Report.Tmp"));
+    }
+
+    @Test
+    void matches_regularFile() {
+        assertFalse(defaultFilter.matches("scan_0042.png"));
+        assertFalse(defaultFilter.matches("crdownload.png"));
+        assertFalse(defaultFilter.matches("template.txt"));
+    }
+
+    @Test
+    void matches_exactName() {
+        TemporaryFileFilter filter = new TemporaryFileFilter(List.of("Thumbs.db"));
+
+        assertTrue(filter.matches("thumbs.db"));
+        assertFalse(filter.matches("my_thumbs.db"));
+    }
+
+    @Test
+    void matches_prefixAndSuffixCannotOverlap() {
+        TemporaryFileFilter filter = new TemporaryFileFilter(List.of("ab*ba"));
+
+        assertTrue(filter.matches("abba"));
+        assertTrue(filter.matches("ab_ba"));
+        assertFalse(filter.matches("aba"));
+    }
+
+    @Test
+    void new_multipleWildcards_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new TemporaryFileFilter(List.of("*.part*")));
+    }
+}